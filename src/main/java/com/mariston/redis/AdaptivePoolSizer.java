@@ -0,0 +1,494 @@
+package com.mariston.redis;
+
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池自适应调节器
+ * <p>
+ * samples the borrow wait, the in-flight count and the connection hold time reported by
+ * {@link RedisClient}, and resizes the lettuce pool within {@code [minTotal, maxTotal]}:
+ * <ul>
+ * <li>additive increase by {@code increaseStep} while callers wait longer than {@code targetWaitMillis}
+ * (or straight to the Little's law size when that is larger)</li>
+ * <li>multiplicative decrease by {@code decreaseFactor} while the peak in-flight count stays below
+ * {@code lowUtilization} of the pool, never below the Little's law size
+ * {@code throughput * holdTime * headroom}</li>
+ * </ul>
+ * the hold time is the time a connection is borrowed, not the command latency: writes of {@link RedisClient} do
+ * not wait for the reply, so for them it is the submit time and is lower than the round trip. That is the time the
+ * pool is occupied, which is what the Little's law size needs; it is not a measure of redis latency.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class AdaptivePoolSizer implements AdaptivePoolSizerMBean, InitializingBean, DisposableBean {
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    /**
+     * 连接池
+     */
+    private DefaultLettucePool defaultLettucePool;
+
+    /**
+     * 连接池内部对象池
+     */
+    private GenericObjectPool<?> internalPool;
+
+    /**
+     * maxTotal 下限
+     */
+    private volatile int minTotal = 5;
+
+    /**
+     * maxTotal 上限
+     */
+    private volatile int maxTotal = 100;
+
+    /**
+     * 平均借用等待超过该值(毫秒)时扩容
+     */
+    private volatile double targetWaitMillis = 5;
+
+    /**
+     * 加性扩容步长
+     */
+    private int increaseStep = 2;
+
+    /**
+     * 乘性缩容因子
+     */
+    private double decreaseFactor = 0.75;
+
+    /**
+     * 峰值占用低于 maxTotal 的该比例时缩容
+     */
+    private double lowUtilization = 0.5;
+
+    /**
+     * Little's law 估算值的余量系数
+     */
+    private double headroom = 1.5;
+
+    /**
+     * 采样周期(毫秒)
+     */
+    private long sampleIntervalMillis = 1000;
+
+    /**
+     * 保留的调整记录条数
+     */
+    private int historySize = 100;
+
+    /**
+     * JMX 名称, 为空则不注册
+     */
+    private String objectName = "com.mariston.redis:type=AdaptivePoolSizer";
+
+    /**
+     * 采样窗口统计
+     */
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder borrowWaitNanos = new LongAdder();
+    private final LongAdder returns = new LongAdder();
+    private final LongAdder holdNanos = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    /**
+     * 累计统计
+     */
+    private final AtomicLong growCount = new AtomicLong();
+    private final AtomicLong shrinkCount = new AtomicLong();
+    private volatile double lastBorrowWaitMillis;
+    private volatile double lastHoldMillis;
+    private volatile double lastThroughput;
+    private volatile int lastLittleTarget;
+    private volatile ResizeDecision lastDecision;
+    private final Deque<ResizeDecision> history = new ArrayDeque<>();
+
+    /**
+     * 采样线程
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * called by {@link RedisClient} after a connection has been borrowed
+     *
+     * @param waitNanos time spent in {@code getResource()}
+     */
+    void onBorrow(long waitNanos) {
+        borrows.increment();
+        borrowWaitNanos.add(waitNanos);
+        int current = inFlight.incrementAndGet();
+        int peak;
+        while (current > (peak = peakInFlight.get()) && !peakInFlight.compareAndSet(peak, current)) {
+            // retry
+        }
+    }
+
+    /**
+     * called by {@link RedisClient} after a connection has been returned
+     *
+     * @param holdNanos time between borrow and return; the command latency for reads, only the submit time for
+     *                  writes, which return the connection without waiting for the reply
+     */
+    void onReturn(long holdNanos) {
+        returns.increment();
+        this.holdNanos.add(holdNanos);
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return hold time reported since the last sample, in nanoseconds
+     */
+    long getHoldNanos() {
+        return holdNanos.sum();
+    }
+
+    /**
+     * take one sample and resize the pool if needed
+     */
+    void sample() {
+        try {
+            long borrowed = borrows.sumThenReset();
+            long waitNanos = borrowWaitNanos.sumThenReset();
+            long returned = returns.sumThenReset();
+            long held = holdNanos.sumThenReset();
+            int peak = peakInFlight.getAndSet(inFlight.get());
+
+            Sample sample = new Sample();
+            sample.throughput = borrowed * 1000.0 / sampleIntervalMillis;
+            sample.borrowWaitMillis = borrowed == 0 ? 0 : waitNanos / 1e6 / borrowed;
+            sample.holdMillis = returned == 0 ? 0 : held / 1e6 / returned;
+            sample.peakInFlight = peak;
+            sample.waiters = internalPool.getNumWaiters();
+
+            ResizeDecision decision = decide(internalPool.getMaxTotal(), sample);
+            lastBorrowWaitMillis = sample.borrowWaitMillis;
+            lastHoldMillis = sample.holdMillis;
+            lastThroughput = sample.throughput;
+            lastLittleTarget = decision.littleTarget;
+            lastDecision = decision;
+            if (decision.to != decision.from) {
+                apply(decision.to);
+                if (decision.to > decision.from) {
+                    growCount.incrementAndGet();
+                } else {
+                    shrinkCount.incrementAndGet();
+                }
+                synchronized (history) {
+                    history.addLast(decision);
+                    while (history.size() > historySize) {
+                        history.removeFirst();
+                    }
+                }
+                logger.info("===连接池调整: {}", decision);
+            }
+        } catch (Exception e) {
+            logger.error("===连接池采样异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        }
+    }
+
+    /**
+     * AIMD decision bounded by {@code [minTotal, maxTotal]} and floored by the Little's law size
+     *
+     * @param current the current maxTotal
+     * @param sample  statistics of the last window
+     * @return {@link ResizeDecision}
+     */
+    ResizeDecision decide(int current, Sample sample) {
+        int lower = Math.min(minTotal, maxTotal);
+        int upper = maxTotal;
+        int little = (int) Math.ceil(sample.throughput * sample.holdMillis / 1000.0 * headroom);
+        little = Math.max(lower, Math.min(upper, little));
+
+        int target = current;
+        String reason;
+        if (current < lower || current > upper) {
+            target = Math.max(lower, Math.min(upper, current));
+            reason = "out of bounds [" + lower + "," + upper + "]";
+        } else if (sample.waiters > 0 || sample.borrowWaitMillis > targetWaitMillis) {
+            target = Math.min(upper, Math.max(current + increaseStep, little));
+            reason = String.format("borrow wait %.2fms (target %.2fms), %d waiters", sample.borrowWaitMillis, targetWaitMillis, sample.waiters);
+        } else if (sample.peakInFlight < current * lowUtilization) {
+            target = Math.max(little, Math.max(sample.peakInFlight, (int) (current * decreaseFactor)));
+            reason = String.format("peak in-flight %d below %.0f%% of %d", sample.peakInFlight, lowUtilization * 100, current);
+        } else {
+            reason = "within target";
+        }
+        return new ResizeDecision(System.currentTimeMillis(), current, Math.max(lower, target), little, sample, reason);
+    }
+
+    /**
+     * resize the pool, idle connections above the new size are closed when they are returned
+     *
+     * @param size new maxTotal
+     */
+    private void apply(int size) {
+        internalPool.setMaxTotal(size);
+        internalPool.setMaxIdle(size);
+        internalPool.setMinIdle(Math.min(defaultLettucePool.getPoolConfig().getMinIdle(), size));
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(defaultLettucePool, "the default lettuce pool is null ");
+        Assert.isTrue(minTotal > 0 && minTotal <= maxTotal, "minTotal must be between 1 and maxTotal");
+        Assert.isTrue(decreaseFactor > 0 && decreaseFactor < 1, "decreaseFactor must be between 0 and 1");
+        Field field = ReflectionUtils.findField(DefaultLettucePool.class, "internalPool");
+        Assert.notNull(field, "unsupported lettuce pool, the internal pool is not found");
+        ReflectionUtils.makeAccessible(field);
+        internalPool = (GenericObjectPool<?>) ReflectionUtils.getField(field, defaultLettucePool);
+        Assert.notNull(internalPool, "the lettuce pool is not initialized");
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "redis-pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sample, sampleIntervalMillis, sampleIntervalMillis, TimeUnit.MILLISECONDS);
+
+        if (objectName != null && !objectName.isEmpty()) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(objectName);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(this, name);
+                }
+            } catch (Exception e) {
+                logger.warn("===注册JMX失败:{}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (objectName != null && !objectName.isEmpty()) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+    }
+
+    @Override
+    public int getCurrentMaxTotal() {
+        return internalPool == null ? -1 : internalPool.getMaxTotal();
+    }
+
+    @Override
+    public int getMinTotal() {
+        return minTotal;
+    }
+
+    @Override
+    public void setMinTotal(int minTotal) {
+        this.minTotal = minTotal;
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    @Override
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    @Override
+    public double getTargetWaitMillis() {
+        return targetWaitMillis;
+    }
+
+    @Override
+    public void setTargetWaitMillis(double targetWaitMillis) {
+        this.targetWaitMillis = targetWaitMillis;
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public int getNumWaiters() {
+        return internalPool == null ? 0 : internalPool.getNumWaiters();
+    }
+
+    @Override
+    public double getLastBorrowWaitMillis() {
+        return lastBorrowWaitMillis;
+    }
+
+    @Override
+    public double getLastHoldMillis() {
+        return lastHoldMillis;
+    }
+
+    @Override
+    public double getLastThroughput() {
+        return lastThroughput;
+    }
+
+    @Override
+    public int getLastLittleTarget() {
+        return lastLittleTarget;
+    }
+
+    @Override
+    public long getGrowCount() {
+        return growCount.get();
+    }
+
+    @Override
+    public long getShrinkCount() {
+        return shrinkCount.get();
+    }
+
+    @Override
+    public String getLastDecision() {
+        ResizeDecision decision = lastDecision;
+        return decision == null ? null : decision.toString();
+    }
+
+    @Override
+    public String[] getDecisionHistory() {
+        synchronized (history) {
+            String[] result = new String[history.size()];
+            int i = 0;
+            for (ResizeDecision decision : history) {
+                result[i++] = decision.toString();
+            }
+            return result;
+        }
+    }
+
+    public void setDefaultLettucePool(DefaultLettucePool defaultLettucePool) {
+        this.defaultLettucePool = defaultLettucePool;
+    }
+
+    public void setIncreaseStep(int increaseStep) {
+        this.increaseStep = increaseStep;
+    }
+
+    public void setDecreaseFactor(double decreaseFactor) {
+        this.decreaseFactor = decreaseFactor;
+    }
+
+    public void setLowUtilization(double lowUtilization) {
+        this.lowUtilization = lowUtilization;
+    }
+
+    public void setHeadroom(double headroom) {
+        this.headroom = headroom;
+    }
+
+    public void setSampleIntervalMillis(long sampleIntervalMillis) {
+        this.sampleIntervalMillis = sampleIntervalMillis;
+    }
+
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+    }
+
+    public void setObjectName(String objectName) {
+        this.objectName = objectName;
+    }
+
+    /**
+     * statistics of one sample window
+     */
+    static final class Sample {
+        double throughput;
+        double borrowWaitMillis;
+        double holdMillis;
+        int peakInFlight;
+        int waiters;
+    }
+
+    /**
+     * one resize decision and its reason
+     */
+    public static final class ResizeDecision {
+
+        private final long timestamp;
+        private final int from;
+        private final int to;
+        private final int littleTarget;
+        private final double throughput;
+        private final double borrowWaitMillis;
+        private final double holdMillis;
+        private final int peakInFlight;
+        private final int waiters;
+        private final String reason;
+
+        ResizeDecision(long timestamp, int from, int to, int littleTarget, Sample sample, String reason) {
+            this.timestamp = timestamp;
+            this.from = from;
+            this.to = to;
+            this.littleTarget = littleTarget;
+            this.throughput = sample.throughput;
+            this.borrowWaitMillis = sample.borrowWaitMillis;
+            this.holdMillis = sample.holdMillis;
+            this.peakInFlight = sample.peakInFlight;
+            this.waiters = sample.waiters;
+            this.reason = reason;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        public int getLittleTarget() {
+            return littleTarget;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%tF %<tT maxTotal %d -> %d (%s) [throughput=%.1f/s, wait=%.2fms, hold=%.2fms, peak=%d, waiters=%d, little=%d]",
+                    timestamp, from, to, reason, throughput, borrowWaitMillis, holdMillis, peakInFlight, waiters, littleTarget);
+        }
+    }
+}
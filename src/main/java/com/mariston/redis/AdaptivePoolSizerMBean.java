@@ -0,0 +1,96 @@
+package com.mariston.redis;
+
+/**
+ * JMX view of {@link AdaptivePoolSizer}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public interface AdaptivePoolSizerMBean {
+
+    /**
+     * @return the current maxTotal of the pool
+     */
+    int getCurrentMaxTotal();
+
+    /**
+     * @return the lower bound of maxTotal
+     */
+    int getMinTotal();
+
+    /**
+     * @param minTotal the lower bound of maxTotal
+     */
+    void setMinTotal(int minTotal);
+
+    /**
+     * @return the upper bound of maxTotal
+     */
+    int getMaxTotal();
+
+    /**
+     * @param maxTotal the upper bound of maxTotal
+     */
+    void setMaxTotal(int maxTotal);
+
+    /**
+     * @return the mean borrow wait (ms) above which the pool grows
+     */
+    double getTargetWaitMillis();
+
+    /**
+     * @param targetWaitMillis the mean borrow wait (ms) above which the pool grows
+     */
+    void setTargetWaitMillis(double targetWaitMillis);
+
+    /**
+     * @return connections currently borrowed through the client
+     */
+    int getInFlight();
+
+    /**
+     * @return threads currently blocked in the pool
+     */
+    int getNumWaiters();
+
+    /**
+     * @return mean borrow wait (ms) of the last sample window
+     */
+    double getLastBorrowWaitMillis();
+
+    /**
+     * @return mean connection hold time (ms) of the last sample window
+     */
+    double getLastHoldMillis();
+
+    /**
+     * @return borrows per second of the last sample window
+     */
+    double getLastThroughput();
+
+    /**
+     * @return the Little's law pool size of the last sample window
+     */
+    int getLastLittleTarget();
+
+    /**
+     * @return number of grow decisions
+     */
+    long getGrowCount();
+
+    /**
+     * @return number of shrink decisions
+     */
+    long getShrinkCount();
+
+    /**
+     * @return the last decision, including holds
+     */
+    String getLastDecision();
+
+    /**
+     * @return the most recent resize decisions, oldest first
+     */
+    String[] getDecisionHistory();
+}
@@ -0,0 +1,808 @@
+package com.mariston.redis;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.lambdaworks.redis.KeyScanCursor;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.ScanArgs;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 批量导入导出
+ * <p>
+ * import streams a file through {@code workers} connections, records are routed to a worker by key hash so the
+ * commands of one key keep their order, and every worker keeps at most {@code maxInFlight} pipelined commands
+ * on its connection. Supported formats:
+ * <ul>
+ * <li>{@link Format#RESP}: redis protocol, i.e. the input of {@code redis-cli --pipe}. The database is the index of
+ * the import, SELECT and SWAPDB are rejected; MULTI/EXEC, DISCARD, WATCH and UNWATCH act on the connection that
+ * sends them, so they are only accepted with one worker</li>
+ * <li>{@link Format#CSV}: {@code key,value[,ttl]}, fields may be double quoted</li>
+ * <li>{@link Format#NDJSON}: one object per line with {@code key}, optional {@code ttl} (seconds) and one of
+ * {@code value} (text), {@code base64} (binary), {@code hash} (object of text), {@code hash64} (object of base64
+ * fields and values) or {@code dump} (base64 DUMP payload)</li>
+ * </ul>
+ * export SCANs the database page by page, pages are fetched by {@code workers} threads with pipelined
+ * TYPE/PTTL/GET/HGETALL/DUMP and written as NDJSON, so only a bounded number of pages is held in memory. Strings
+ * are written as {@code base64} and hashes as {@code hash64}, so binary data survives the round trip.
+ * An import is refused while the {@link WriteSpool} of the client has a backlog.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class BulkLoader {
+
+    /**
+     * 文件格式
+     */
+    public enum Format {
+        RESP, CSV, NDJSON
+    }
+
+    /**
+     * 进度回调
+     */
+    public interface ProgressListener {
+
+        /**
+         * called every {@code progressIntervalMillis} and once when finished
+         *
+         * @param stats {@link BulkStats}
+         */
+        void onProgress(BulkStats stats);
+    }
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+
+    /**
+     * 默认字符集
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * 结束标记
+     */
+    private static final Queued EOF = new Queued(new byte[0][][], 0);
+
+    /**
+     * 改变数据库的命令, 导入的数据库由参数指定
+     */
+    private static final Set<String> DATABASE_COMMANDS = new HashSet<>(Arrays.asList("SELECT", "SWAPDB"));
+
+    /**
+     * 作用于连接状态的命令, 前后的命令必须在同一个连接上发送
+     */
+    private static final Set<String> CONNECTION_COMMANDS = new HashSet<>(Arrays.asList("MULTI", "EXEC", "DISCARD", "WATCH", "UNWATCH"));
+
+    /**
+     * redis client
+     */
+    private final RedisClient redisClient;
+
+    /**
+     * 并行连接数
+     */
+    private int workers = 1;
+
+    /**
+     * 每个连接上未确认的命令数上限
+     */
+    private int maxInFlight = 1000;
+
+    /**
+     * 每个连接的待发送记录队列长度
+     */
+    private int queueSize = 10000;
+
+    /**
+     * SCAN COUNT
+     */
+    private int scanCount = 1000;
+
+    /**
+     * 单条命令超时(毫秒)
+     */
+    private long commandTimeoutMillis = 60000;
+
+    /**
+     * 进度回调周期(毫秒)
+     */
+    private long progressIntervalMillis = 5000;
+
+    /**
+     * 进度回调, 默认打印日志
+     */
+    private ProgressListener progressListener = stats -> logger.info("===bulk progress: {}", stats);
+
+    public BulkLoader(RedisClient redisClient) {
+        Assert.notNull(redisClient, "redis client is null");
+        this.redisClient = redisClient;
+    }
+
+    /**
+     * import a file into the database
+     *
+     * @param file   input file
+     * @param format {@link Format}
+     * @param index  the index of database
+     * @return {@link BulkStats}
+     * @throws IOException if the file can not be read or is malformed
+     */
+    public BulkStats importFile(File file, Format format, int index) throws IOException {
+        Assert.notNull(file, "file is null");
+        Assert.notNull(format, "format is null");
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+        // the imported keys would be overwritten by the older spooled writes when they are replayed
+        Assert.state(!redisClient.hasBacklog(), "the write spool has a backlog, import it once the backlog is replayed");
+        BulkStats stats = new BulkStats();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory("redis-bulk-import"));
+        ScheduledExecutorService progress = startProgress(stats);
+        ImportWorker[] importWorkers = new ImportWorker[workers];
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            importWorkers[i] = new ImportWorker(index, stats);
+            futures.add(executor.submit(importWorkers[i]));
+        }
+        RecordReader reader = null;
+        try {
+            reader = openReader(file, format);
+            byte[][][] record;
+            while ((record = reader.next()) != null) {
+                if (record.length == 0) {
+                    continue;
+                }
+                check(record);
+                if (record[0].length > 1) {
+                    redisClient.written(index, record[0][1]);
+                }
+                int worker = workers == 1 ? 0 : (Arrays.hashCode(record[0].length > 1 ? record[0][1] : record[0][0]) & 0x7fffffff) % workers;
+                // counted by the worker once redis has acknowledged every command of the record
+                offer(importWorkers[worker], futures.get(worker), new Queued(record, reader.position()));
+            }
+            for (int i = 0; i < workers; i++) {
+                offer(importWorkers[i], futures.get(i), EOF);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("import interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("import worker failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            IOUtils.closeQuietly(reader);
+            executor.shutdownNow();
+            finish(progress, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * export the keys of the database matching {@code pattern} as NDJSON
+     *
+     * @param file    output file
+     * @param pattern the pattern of SCAN MATCH, null for all keys
+     * @param index   the index of database
+     * @return {@link BulkStats}
+     * @throws IOException if the file can not be written
+     */
+    public BulkStats exportFile(File file, String pattern, int index) throws IOException {
+        Assert.notNull(file, "file is null");
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+        BulkStats stats = new BulkStats();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, threadFactory("redis-bulk-export"));
+        ScheduledExecutorService progress = startProgress(stats);
+        // bounds the pages held in memory
+        Semaphore pages = new Semaphore(workers * 2);
+        Writer out = null;
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            out = new BufferedWriter(Channels.newWriter(FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), UTF8.newEncoder(), -1), 1 << 20);
+            final Writer writer = out;
+            ScanArgs args = new ScanArgs().limit(scanCount);
+            if (StringUtils.isNotEmpty(pattern)) {
+                args.match(pattern);
+            }
+            connection = redisClient.getConn(index);
+            KeyScanCursor<byte[]> cursor = connection.scan(args).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+            while (true) {
+                final List<byte[]> keys = cursor.getKeys();
+                if (!keys.isEmpty()) {
+                    pages.acquire();
+                    executor.execute(() -> {
+                        try {
+                            exportPage(keys, index, writer, stats);
+                        } finally {
+                            pages.release();
+                        }
+                    });
+                }
+                if (cursor.isFinished()) {
+                    break;
+                }
+                cursor = connection.scan(cursor, args).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            pages.acquire(workers * 2);
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("export interrupted");
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("scan failed: " + e.getMessage(), e);
+        } finally {
+            if (connection != null) {
+                redisClient.returnConn(connection);
+            }
+            executor.shutdownNow();
+            IOUtils.closeQuietly(out);
+            finish(progress, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * fetch and write one SCAN page
+     */
+    private void exportPage(List<byte[]> keys, int index, Writer out, BulkStats stats) {
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            connection = redisClient.getConn(index);
+            List<RedisFuture<String>> types = new ArrayList<>(keys.size());
+            List<RedisFuture<Long>> ttls = new ArrayList<>(keys.size());
+            for (byte[] key : keys) {
+                types.add(connection.type(key));
+                ttls.add(connection.pttl(key));
+            }
+            List<RedisFuture<?>> values = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                String type = types.get(i).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                if ("string".equals(type)) {
+                    values.add(connection.get(keys.get(i)));
+                } else if ("hash".equals(type)) {
+                    values.add(connection.hgetall(keys.get(i)));
+                } else if ("none".equals(type)) {
+                    values.add(null);
+                } else {
+                    values.add(connection.dump(keys.get(i)));
+                }
+            }
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < keys.size(); i++) {
+                if (values.get(i) == null) {
+                    continue;
+                }
+                Object value = values.get(i).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                long pttl = ttls.get(i).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (value == null || pttl == -2) {
+                    // expired between SCAN and fetch
+                    continue;
+                }
+                String type = types.get(i).get();
+                JSONObject json = new JSONObject(true);
+                json.put("key", new String(keys.get(i), UTF8));
+                json.put("type", type);
+                json.put("ttl", pttl < 0 ? -1 : (pttl + 999) / 1000);
+                if ("string".equals(type)) {
+                    json.put("base64", Base64.getEncoder().encodeToString((byte[]) value));
+                } else if ("hash".equals(type)) {
+                    Map<String, String> hash = new LinkedHashMap<>();
+                    for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                        hash.put(Base64.getEncoder().encodeToString((byte[]) entry.getKey()),
+                                Base64.getEncoder().encodeToString((byte[]) entry.getValue()));
+                    }
+                    json.put("hash64", hash);
+                } else {
+                    json.put("dump", Base64.getEncoder().encodeToString((byte[]) value));
+                }
+                String line = json.toJSONString();
+                lines.append(line).append('\n');
+                stats.record(line.getBytes(UTF8).length + 1);
+                stats.command();
+            }
+            synchronized (out) {
+                out.write(lines.toString());
+            }
+        } catch (Exception e) {
+            stats.error(e.getMessage());
+            logger.error("===导出异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                redisClient.returnConn(connection);
+            }
+        }
+    }
+
+    /**
+     * reject the commands that would not act on the database of the import or that need one connection
+     */
+    private void check(byte[][][] record) throws IOException {
+        for (byte[][] command : record) {
+            String name = new String(command[0], UTF8).toUpperCase(Locale.ROOT);
+            if (DATABASE_COMMANDS.contains(name)) {
+                throw new IOException(name + " is not supported, the database is the index of the import");
+            }
+            if (workers > 1 && CONNECTION_COMMANDS.contains(name)) {
+                throw new IOException(name + " acts on one connection, import it with one worker");
+            }
+        }
+    }
+
+    /**
+     * hand a record to a worker, failing fast when the worker has died
+     */
+    private void offer(ImportWorker worker, Future<?> future, Queued record) throws InterruptedException, ExecutionException {
+        while (!worker.queue.offer(record, 100, TimeUnit.MILLISECONDS)) {
+            if (future.isDone()) {
+                future.get();
+                throw new ExecutionException(new IllegalStateException("import worker stopped"));
+            }
+        }
+    }
+
+    private ScheduledExecutorService startProgress(BulkStats stats) {
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(threadFactory("redis-bulk-progress"));
+        if (progressListener != null) {
+            progress.scheduleAtFixedRate(() -> progressListener.onProgress(stats), progressIntervalMillis, progressIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return progress;
+    }
+
+    private void finish(ScheduledExecutorService progress, BulkStats stats) {
+        progress.shutdownNow();
+        stats.finish();
+        if (progressListener != null) {
+            progressListener.onProgress(stats);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        return new ThreadFactory() {
+            private int count;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * open the record reader of the format
+     */
+    static RecordReader openReader(File file, Format format) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        switch (format) {
+            case RESP:
+                return new RespReader(channel);
+            case CSV:
+                return new CsvReader(channel);
+            default:
+                return new NdjsonReader(channel);
+        }
+    }
+
+    /**
+     * 导入线程, 独占一个连接
+     */
+    private class ImportWorker implements Callable<Void> {
+
+        private final BlockingQueue<Queued> queue = new ArrayBlockingQueue<>(queueSize);
+
+        private final Semaphore window = new Semaphore(maxInFlight);
+
+        private final int index;
+
+        private final BulkStats stats;
+
+        ImportWorker(int index, BulkStats stats) {
+            this.index = index;
+            this.stats = stats;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            RedisAsyncConnection<byte[], byte[]> connection = redisClient.getConn(index);
+            try {
+                while (true) {
+                    Queued record = queue.take();
+                    if (record == EOF) {
+                        break;
+                    }
+                    for (byte[][] command : record.commands) {
+                        acquire(1);
+                        final RedisFuture<List<Object>> future = RawCommands.dispatch(connection, command);
+                        future.addListener(() -> {
+                            String error = RawCommands.error(future);
+                            if (error == null) {
+                                stats.command();
+                                if (command.length > 1) {
+                                    // a key filter rebuilt while the record was queued did not see the key
+                                    redisClient.written(index, command[1]);
+                                }
+                            } else {
+                                stats.error(error);
+                            }
+                            record.acknowledged(error == null, stats);
+                            window.release();
+                        }, Runnable::run);
+                    }
+                }
+                acquire(maxInFlight);
+                window.release(maxInFlight);
+            } finally {
+                redisClient.returnConn(connection);
+            }
+            return null;
+        }
+
+        private void acquire(int permits) throws InterruptedException, TimeoutException {
+            if (!window.tryAcquire(permits, commandTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("no reply within " + commandTimeoutMillis + "ms");
+            }
+        }
+    }
+
+    /**
+     * 待发送的记录, 所有命令确认后计入统计
+     */
+    private static final class Queued {
+
+        private final byte[][][] commands;
+
+        private final long size;
+
+        private int pending;
+
+        private boolean failed;
+
+        Queued(byte[][][] commands, long size) {
+            this.commands = commands;
+            this.size = size;
+            this.pending = commands.length;
+        }
+
+        /**
+         * called once per command from the event loop of the connection
+         */
+        synchronized void acknowledged(boolean success, BulkStats stats) {
+            failed |= !success;
+            if (--pending == 0) {
+                if (failed) {
+                    stats.skip(size);
+                } else {
+                    stats.record(size);
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录读取
+     */
+    interface RecordReader extends Closeable {
+
+        /**
+         * @return the commands of the next record, null at the end of the file
+         * @throws IOException if the file is malformed
+         */
+        byte[][][] next() throws IOException;
+
+        /**
+         * @return bytes consumed by the last record
+         */
+        long position();
+    }
+
+    /**
+     * redis protocol reader
+     */
+    static class RespReader implements RecordReader {
+
+        private final InputStream in;
+
+        private long consumed;
+
+        RespReader(FileChannel channel) {
+            this.in = new BufferedInputStream(Channels.newInputStream(channel), 1 << 20);
+        }
+
+        @Override
+        public byte[][][] next() throws IOException {
+            consumed = 0;
+            String header = readLine();
+            while (header != null && header.isEmpty()) {
+                header = readLine();
+            }
+            if (header == null) {
+                return null;
+            }
+            if (header.charAt(0) != '*') {
+                throw new IOException("expected array header but was: " + header);
+            }
+            int count = Integer.parseInt(header.substring(1));
+            byte[][] command = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                String length = readLine();
+                if (length == null || length.isEmpty() || length.charAt(0) != '$') {
+                    throw new IOException("expected bulk string header but was: " + length);
+                }
+                command[i] = new byte[Integer.parseInt(length.substring(1))];
+                IOUtils.readFully(in, command[i]);
+                consumed += command[i].length;
+                if (in.read() != '\r' || in.read() != '\n') {
+                    throw new IOException("bulk string is not terminated by CRLF");
+                }
+                consumed += 2;
+            }
+            return new byte[][][]{command};
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                consumed++;
+                if (c == '\n') {
+                    int last = line.length() - 1;
+                    if (last >= 0 && line.charAt(last) == '\r') {
+                        line.setLength(last);
+                    }
+                    return line.toString();
+                }
+                line.append((char) c);
+            }
+            return line.length() == 0 ? null : line.toString();
+        }
+
+        @Override
+        public long position() {
+            return consumed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * line based reader
+     */
+    abstract static class LineReader implements RecordReader {
+
+        private final InputStream in;
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+
+        private long consumed;
+
+        LineReader(FileChannel channel) {
+            this.in = new BufferedInputStream(Channels.newInputStream(channel), 1 << 20);
+        }
+
+        @Override
+        public byte[][][] next() throws IOException {
+            consumed = 0;
+            String line;
+            while ((line = readLine()) != null) {
+                if (StringUtils.isNotBlank(line)) {
+                    byte[][][] record = parse(line);
+                    if (record != null) {
+                        return record;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param line a non-blank line
+         * @return the commands, null to skip the line
+         * @throws IOException if the line is malformed
+         */
+        abstract byte[][][] parse(String line) throws IOException;
+
+        /**
+         * read a line ended by LF or CRLF, counting the encoded bytes including the terminator
+         */
+        private String readLine() throws IOException {
+            buffer.reset();
+            int c;
+            while ((c = in.read()) != -1) {
+                consumed++;
+                if (c == '\n') {
+                    break;
+                }
+                buffer.write(c);
+            }
+            if (c == -1 && buffer.size() == 0) {
+                return null;
+            }
+            String line = new String(buffer.toByteArray(), UTF8);
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+
+        @Override
+        public long position() {
+            return consumed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        static byte[][] set(String key, byte[] value, long ttl) {
+            if (ttl > 0) {
+                return new byte[][]{bytes("SETEX"), bytes(key), bytes(String.valueOf(ttl)), value};
+            }
+            return new byte[][]{bytes("SET"), bytes(key), value};
+        }
+
+        static byte[] bytes(String value) {
+            return value.getBytes(UTF8);
+        }
+    }
+
+    /**
+     * {@code key,value[,ttl]}
+     */
+    static class CsvReader extends LineReader {
+
+        private boolean first = true;
+
+        CsvReader(FileChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        byte[][][] parse(String line) throws IOException {
+            List<String> fields = fields(line);
+            if (first) {
+                first = false;
+                if ("key".equalsIgnoreCase(fields.get(0)) && fields.size() > 1 && "value".equalsIgnoreCase(fields.get(1))) {
+                    return null;
+                }
+            }
+            if (fields.size() < 2 || fields.get(0).isEmpty()) {
+                throw new IOException("expected key,value[,ttl] but was: " + line);
+            }
+            long ttl = fields.size() > 2 && !fields.get(2).isEmpty() ? Long.parseLong(fields.get(2).trim()) : -1;
+            return new byte[][][]{set(fields.get(0), bytes(fields.get(1)), ttl)};
+        }
+
+        static List<String> fields(String line) {
+            List<String> fields = new ArrayList<>(3);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * one json object per line
+     */
+    static class NdjsonReader extends LineReader {
+
+        NdjsonReader(FileChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        byte[][][] parse(String line) throws IOException {
+            JSONObject json;
+            try {
+                json = JSON.parseObject(line);
+            } catch (Exception e) {
+                throw new IOException("malformed json: " + e.getMessage(), e);
+            }
+            String key = json.getString("key");
+            if (StringUtils.isEmpty(key)) {
+                throw new IOException("key is missing: " + line);
+            }
+            long ttl = json.containsKey("ttl") ? json.getLongValue("ttl") : -1;
+            if (json.containsKey("dump")) {
+                byte[] payload = Base64.getDecoder().decode(json.getString("dump"));
+                return new byte[][][]{{bytes("RESTORE"), bytes(key), bytes(String.valueOf(ttl > 0 ? ttl * 1000 : 0)), payload, bytes("REPLACE")}};
+            }
+            if (json.containsKey("hash") || json.containsKey("hash64")) {
+                boolean binary = json.containsKey("hash64");
+                JSONObject hash = json.getJSONObject(binary ? "hash64" : "hash");
+                byte[][] hmset = new byte[2 + hash.size() * 2][];
+                hmset[0] = bytes("HMSET");
+                hmset[1] = bytes(key);
+                int i = 2;
+                for (Map.Entry<String, Object> entry : hash.entrySet()) {
+                    String field = entry.getKey();
+                    String value = String.valueOf(entry.getValue());
+                    hmset[i++] = binary ? Base64.getDecoder().decode(field) : bytes(field);
+                    hmset[i++] = binary ? Base64.getDecoder().decode(value) : bytes(value);
+                }
+                byte[][] del = {bytes("DEL"), bytes(key)};
+                if (ttl > 0) {
+                    return new byte[][][]{del, hmset, {bytes("EXPIRE"), bytes(key), bytes(String.valueOf(ttl))}};
+                }
+                return new byte[][][]{del, hmset};
+            }
+            if (json.containsKey("base64")) {
+                return new byte[][][]{set(key, Base64.getDecoder().decode(json.getString("base64")), ttl)};
+            }
+            if (json.containsKey("value")) {
+                return new byte[][][]{set(key, bytes(json.getString("value")), ttl)};
+            }
+            throw new IOException("one of value, base64, hash, hash64 or dump is required: " + line);
+        }
+    }
+
+    public void setWorkers(int workers) {
+        Assert.isTrue(workers > 0, "workers must be positive");
+        this.workers = workers;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        Assert.isTrue(maxInFlight > 0, "maxInFlight must be positive");
+        this.maxInFlight = maxInFlight;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public void setScanCount(int scanCount) {
+        this.scanCount = scanCount;
+    }
+
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    public void setProgressIntervalMillis(long progressIntervalMillis) {
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+}
@@ -0,0 +1,120 @@
+package com.mariston.redis;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批量导入导出统计
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class BulkStats {
+
+    /**
+     * 已处理的记录(键)数, 导入时为 redis 已确认的记录数
+     */
+    private final LongAdder records = new LongAdder();
+
+    /**
+     * 已成功执行的命令数
+     */
+    private final LongAdder commands = new LongAdder();
+
+    /**
+     * 失败数
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * 已读写的文件字节数
+     */
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * 最近一次错误
+     */
+    private volatile String lastError;
+
+    /**
+     * 开始时间(纳秒)
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 结束时间(纳秒), 未结束为 0
+     */
+    private volatile long endNanos;
+
+    void record(long size) {
+        records.increment();
+        bytes.add(size);
+    }
+
+    /**
+     * a record that was read but not stored, e.g. one of its commands failed
+     */
+    void skip(long size) {
+        bytes.add(size);
+    }
+
+    void command() {
+        commands.increment();
+    }
+
+    void error(String message) {
+        errors.increment();
+        lastError = message;
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public long getRecords() {
+        return records.sum();
+    }
+
+    public long getCommands() {
+        return commands.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    /**
+     * @return elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        return (end - startNanos) / 1000000L;
+    }
+
+    /**
+     * @return records per second since the start
+     */
+    public double getKeysPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getRecords() * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("records=%d, commands=%d, errors=%d, bytes=%d, elapsed=%dms, keys/sec=%.1f%s",
+                getRecords(), getCommands(), getErrors(), getBytes(), getElapsedMillis(), getKeysPerSecond(),
+                lastError == null ? "" : ", lastError=" + lastError);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mariston.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * 心电图样本的紧凑二进制编码
+ * <p>
+ * layout: version byte, monitoredTime int, channel int, sampleRate int, leadEvent short,
+ * data as int length and bytes, remark as int length (-1 for null) and UTF-8 bytes
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+abstract class HeartCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * @param heart sample
+     * @return encoded bytes
+     */
+    static byte[] encode(Heart heart) {
+        byte[] data = heart.getData() == null ? new byte[0] : heart.getData();
+        byte[] remark = heart.getRemark() == null ? null : heart.getRemark().getBytes(UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 4 + 4 + 2 + 4 + data.length + 4 + (remark == null ? 0 : remark.length));
+        buffer.put(VERSION).putInt(heart.getMonitoredTime()).putInt(heart.getChannel()).putInt(heart.getSampleRate());
+        buffer.putShort(heart.getLeadEvent()).putInt(data.length).put(data);
+        if (remark == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(remark.length).put(remark);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param bytes encoded bytes
+     * @return sample
+     */
+    static Heart decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unknown version of heart sample: " + version);
+        }
+        Heart heart = new Heart();
+        heart.setMonitoredTime(buffer.getInt());
+        heart.setChannel(buffer.getInt());
+        heart.setSampleRate(buffer.getInt());
+        heart.setLeadEvent(buffer.getShort());
+        byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        heart.setData(data);
+        int length = buffer.getInt();
+        if (length >= 0) {
+            heart.setRemark(new String(bytes, buffer.position(), length, UTF_8));
+        }
+        return heart;
+    }
+}
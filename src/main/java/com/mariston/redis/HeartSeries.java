@@ -0,0 +1,438 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.ScoredValue;
+import com.lambdaworks.redis.ScriptOutputType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 心电图按时间索引存储
+ * <p>
+ * the samples of a device are kept in one sorted set ({@code keyPrefix + deviceId}) scored by
+ * {@link Heart#getMonitoredTime()}, the member is the sample encoded with {@link HeartCodec}, so a time window is
+ * read with ZRANGEBYSCORE without knowing any key.
+ * <p>
+ * {@link #getRange} fetches a window in pages of {@code pageSize} samples, {@code parallelPages} pages per round
+ * trip, each read continuing after the score and member of the last sample rather than at an offset, and the next
+ * pages are only fetched when the stream is consumed that far. {@link #downsample} aggregates the waveform bytes per time bucket in a lua script, so only one
+ * min/max/avg row per bucket leaves redis. The script reads the whole window inside redis, keep the windows
+ * passed to it bounded. {@link #put} is not spooled, it is refused while the {@link WriteSpool} of the client has
+ * a backlog.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class HeartSeries {
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(HeartSeries.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * KEYS[1] series, ARGV from, to, bucket width; replies {start, min, max, sum, count} per non-empty bucket.
+     * The waveform starts after the 19 byte header of {@link HeartCodec}, its length is the int at offset 15.
+     */
+    static final String DOWNSAMPLE_SCRIPT = ""
+            + "local from, to, width = tonumber(ARGV[1]), tonumber(ARGV[2]), tonumber(ARGV[3])\n"
+            + "local members = redis.call('ZRANGEBYSCORE', KEYS[1], from, to, 'WITHSCORES')\n"
+            + "local result, bucket, low, high, sum, count = {}, nil, 0, 0, 0, 0\n"
+            + "for i = 1, #members, 2 do\n"
+            + "  local member = members[i]\n"
+            + "  local start = from + math.floor((tonumber(members[i + 1]) - from) / width) * width\n"
+            + "  if start ~= bucket then\n"
+            + "    if count > 0 then result[#result + 1] = {bucket, low, high, sum, count} end\n"
+            + "    bucket, low, high, sum, count = start, 127, -128, 0, 0\n"
+            + "  end\n"
+            + "  local length = struct.unpack('>i4', member, 16)\n"
+            + "  for j = 20, 19 + length do\n"
+            + "    local value = string.byte(member, j)\n"
+            + "    if value > 127 then value = value - 256 end\n"
+            + "    if value < low then low = value end\n"
+            + "    if value > high then high = value end\n"
+            + "    sum = sum + value\n"
+            + "    count = count + 1\n"
+            + "  end\n"
+            + "end\n"
+            + "if count > 0 then result[#result + 1] = {bucket, low, high, sum, count} end\n"
+            + "return result\n";
+
+    private static final String DOWNSAMPLE_SHA = sha1(DOWNSAMPLE_SCRIPT);
+
+    /**
+     * redis client
+     */
+    private final RedisClient redisClient;
+
+    /**
+     * 有序集合键前缀
+     */
+    private String keyPrefix = "heart:series:";
+
+    /**
+     * 保留时长(秒), 0 表示不清理
+     */
+    private long retentionSeconds;
+
+    /**
+     * 每页样本数
+     */
+    private int pageSize = 500;
+
+    /**
+     * 每次读取的页数
+     */
+    private int parallelPages = 4;
+
+    /**
+     * 命令超时(毫秒)
+     */
+    private long commandTimeoutMillis = 10000;
+
+    public HeartSeries(RedisClient redisClient) {
+        Assert.notNull(redisClient, "redis client is null");
+        this.redisClient = redisClient;
+    }
+
+    /**
+     * index samples of a device by their monitored time
+     *
+     * @param deviceId device
+     * @param samples  samples
+     * @param index    the index of database
+     */
+    public void put(String deviceId, List<Heart> samples, int index) {
+        Assert.hasText(deviceId, "deviceId is null or empty");
+        Assert.notNull(samples, "samples is null");
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+        if (samples.isEmpty()) {
+            return;
+        }
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            Assert.state(!redisClient.hasBacklog(), "the write spool has a backlog");
+            connection = redisClient.getConn(index);
+            byte[] key = (keyPrefix + deviceId).getBytes(UTF8);
+            List<RedisFuture<Long>> futures = new ArrayList<>(samples.size() + 1);
+            int latest = Integer.MIN_VALUE;
+            for (Heart sample : samples) {
+                futures.add(connection.zadd(key, sample.getMonitoredTime(), HeartCodec.encode(sample)));
+                latest = Math.max(latest, sample.getMonitoredTime());
+            }
+            if (retentionSeconds > 0) {
+                futures.add(connection.zremrangebyscore(key, Double.NEGATIVE_INFINITY, latest - retentionSeconds - 1));
+            }
+            for (RedisFuture<Long> future : futures) {
+                future.get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (Exception e) {
+            logger.error("===心电图索引写入异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                redisClient.returnConn(connection);
+            }
+        }
+    }
+
+    /**
+     * the samples of a device within a time window, fetched page by page while the stream is consumed and
+     * decoded one by one
+     *
+     * @param deviceId device
+     * @param fromTime first monitored time, inclusive
+     * @param toTime   last monitored time, inclusive
+     * @param index    the index of database
+     * @return samples ordered by monitored time, consuming it throws {@link IllegalStateException} if a page can
+     * not be read
+     */
+    public Stream<Heart> getRange(String deviceId, int fromTime, int toTime, int index) {
+        Assert.hasText(deviceId, "deviceId is null or empty");
+        Assert.isTrue(fromTime <= toTime, "fromTime is after toTime");
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+        PageIterator pages = new PageIterator((keyPrefix + deviceId).getBytes(UTF8), fromTime, toTime, index);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .map(HeartCodec::decode);
+    }
+
+    /**
+     * min/max/avg of the waveform values per time bucket, computed in redis
+     *
+     * @param deviceId      device
+     * @param fromTime      first monitored time, inclusive
+     * @param toTime        last monitored time, inclusive
+     * @param bucketSeconds width of a bucket
+     * @param index         the index of database
+     * @return non-empty buckets ordered by time
+     */
+    @SuppressWarnings("unchecked")
+    public List<Bucket> downsample(String deviceId, int fromTime, int toTime, int bucketSeconds, int index) {
+        Assert.hasText(deviceId, "deviceId is null or empty");
+        Assert.isTrue(fromTime <= toTime, "fromTime is after toTime");
+        Assert.isTrue(bucketSeconds > 0, "bucketSeconds must be positive");
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            connection = redisClient.getConn(index);
+            byte[][] keys = {(keyPrefix + deviceId).getBytes(UTF8)};
+            byte[][] args = {String.valueOf(fromTime).getBytes(UTF8), String.valueOf(toTime).getBytes(UTF8),
+                    String.valueOf(bucketSeconds).getBytes(UTF8)};
+            // a MULTI reply carries the error as the first element of the list, not in getError()
+            RedisFuture<List<Object>> future = connection.evalsha(DOWNSAMPLE_SHA, ScriptOutputType.MULTI, keys, args);
+            String error = await(future);
+            if (error != null && error.startsWith("NOSCRIPT")) {
+                future = connection.eval(DOWNSAMPLE_SCRIPT, ScriptOutputType.MULTI, keys, args);
+                error = await(future);
+            }
+            if (error != null) {
+                throw new IllegalStateException(error);
+            }
+            return buckets(future.get());
+        } catch (Exception e) {
+            logger.error("===心电图降采样异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                redisClient.returnConn(connection);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the error of the command, or null once it completed
+     */
+    private String await(RedisFuture<List<Object>> future) {
+        if (!future.await(commandTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            return "timeout";
+        }
+        return RawCommands.error(future);
+    }
+
+    /**
+     * @param reply {@code [[start, min, max, sum, count], ...]}
+     * @return buckets
+     */
+    @SuppressWarnings("unchecked")
+    static List<Bucket> buckets(List<Object> reply) {
+        List<Bucket> buckets = new ArrayList<>(reply.size());
+        for (Object row : reply) {
+            List<Object> values = (List<Object>) row;
+            long count = (Long) values.get(4);
+            buckets.add(new Bucket(((Long) values.get(0)).intValue(), ((Long) values.get(1)).intValue(),
+                    ((Long) values.get(2)).intValue(), (double) (Long) values.get(3) / count, count));
+        }
+        return buckets;
+    }
+
+    private static String sha1(String script) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(script.getBytes(UTF8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        Assert.notNull(keyPrefix, "keyPrefix is null");
+        this.keyPrefix = keyPrefix;
+    }
+
+    public void setRetentionSeconds(long retentionSeconds) {
+        this.retentionSeconds = retentionSeconds;
+    }
+
+    public void setPageSize(int pageSize) {
+        Assert.isTrue(pageSize > 0, "pageSize must be positive");
+        this.pageSize = pageSize;
+    }
+
+    public void setParallelPages(int parallelPages) {
+        Assert.isTrue(parallelPages > 0, "parallelPages must be positive");
+        this.parallelPages = parallelPages;
+    }
+
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    /**
+     * 降采样桶
+     */
+    public static final class Bucket {
+
+        private final int start;
+
+        private final int min;
+
+        private final int max;
+
+        private final double avg;
+
+        private final long count;
+
+        Bucket(int start, int min, int max, double avg, long count) {
+            this.start = start;
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+            this.count = count;
+        }
+
+        /**
+         * @return monitored time the bucket starts at
+         */
+        public int getStart() {
+            return start;
+        }
+
+        public int getMin() {
+            return min;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        public double getAvg() {
+            return avg;
+        }
+
+        /**
+         * @return waveform values in the bucket
+         */
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return start + " min=" + min + " max=" + max + " avg=" + avg + " count=" + count;
+        }
+    }
+
+    /**
+     * 分页读取, 每次读取 {@code parallelPages} 页
+     * <p>
+     * a page starts after the last returned sample: the samples with the same score and a greater member (redis
+     * orders equal scores by member) are read first, then the samples from the exclusive {@code (score} bound on,
+     * so every page costs O(log N + page) however deep into the window it is. A failed read is thrown from
+     * {@link #hasNext()} rather than ending the range early.
+     */
+    private final class PageIterator implements Iterator<byte[]> {
+
+        private final byte[] key;
+
+        private final int fromTime;
+
+        private final int toTime;
+
+        private final int index;
+
+        private final Deque<byte[]> current = new ArrayDeque<>();
+
+        /**
+         * score and member of the last sample read, null before the first page
+         */
+        private String lastScore;
+
+        private byte[] lastMember;
+
+        private boolean exhausted;
+
+        PageIterator(byte[] key, int fromTime, int toTime, int index) {
+            this.key = key;
+            this.fromTime = fromTime;
+            this.toTime = toTime;
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (current.isEmpty() && !exhausted) {
+                fetch();
+            }
+            return !current.isEmpty();
+        }
+
+        @Override
+        public byte[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.poll();
+        }
+
+        private void fetch() {
+            RedisAsyncConnection<byte[], byte[]> connection = null;
+            try {
+                connection = redisClient.getConn(index);
+                long count = (long) pageSize * parallelPages;
+                RedisFuture<List<byte[]>> ties = null;
+                RedisFuture<List<ScoredValue<byte[]>>> page;
+                if (lastScore == null) {
+                    page = connection.zrangebyscoreWithScores(key, String.valueOf(fromTime), String.valueOf(toTime), 0, count);
+                } else {
+                    ties = connection.zrangebyscore(key, lastScore, lastScore);
+                    page = connection.zrangebyscoreWithScores(key, "(" + lastScore, String.valueOf(toTime), 0, count);
+                }
+                if (ties != null) {
+                    for (byte[] member : ties.get(commandTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                        if (compare(member, lastMember) > 0) {
+                            current.add(member);
+                        }
+                    }
+                }
+                List<ScoredValue<byte[]>> values = page.get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                for (ScoredValue<byte[]> value : values) {
+                    current.add(value.value);
+                }
+                if (values.size() < count) {
+                    exhausted = true;
+                } else {
+                    ScoredValue<byte[]> last = values.get(values.size() - 1);
+                    lastScore = String.valueOf((long) last.score);
+                    lastMember = last.value;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while reading " + new String(key, UTF8), e);
+            } catch (Exception e) {
+                logger.error("===心电图分页读取异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+                throw new IllegalStateException("failed to read " + new String(key, UTF8) + ": " + e.getMessage(), e);
+            } finally {
+                if (connection != null) {
+                    redisClient.returnConn(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * the order of redis for members of equal score: unsigned bytes, a prefix first
+     */
+    static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+}
@@ -0,0 +1,550 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisCommandExecutionException;
+import com.lambdaworks.redis.RedisFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 心电图时序写入
+ * <p>
+ * samples are encoded with {@link HeartCodec} and appended to one redis stream per device
+ * ({@code keyPrefix + deviceId}) with {@code XADD key MAXLEN ~ maxLength <id> d <sample>}. The id is assigned
+ * when the sample is appended, {@code monitoredTime * 1000} with a sequence for samples of the same time, and never
+ * goes back for a device, so a sample with an older time is stored after the newer ones. Samples are buffered per
+ * device and database, all buffers are sent every {@code flushIntervalMillis} and as soon as one holds
+ * {@code batchSize} samples. One flush at a time drains and sends the buffers, so the samples of a device are
+ * appended in order. One send borrows one connection per database and pipelines the XADDs of every device
+ * buffered for it. From the first XADD of a device that failed or timed out, that sample and every later one of
+ * the device are put back for the next flush; redis rejects the ids of those that had been applied anyway, which
+ * are then counted as written, so a retry neither reorders nor duplicates samples. Ids are only monotonic within
+ * one process: after a restart, samples older than the top of the stream are rejected and counted as errors.
+ * While the {@link WriteSpool} of the client has a backlog nothing is sent and the samples stay buffered.
+ * <p>
+ * {@link #read} block-reads a device stream with {@code XREAD COUNT readCount BLOCK blockMillis}. The connection
+ * is held while blocked, so size the pool for the number of concurrent readers.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class HeartStream implements DisposableBean {
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(HeartStream.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final byte[] MAXLEN = "MAXLEN".getBytes(UTF8);
+
+    private static final byte[] APPROXIMATE = "~".getBytes(UTF8);
+
+    private static final byte[] FIELD = "d".getBytes(UTF8);
+
+    /**
+     * redis client
+     */
+    private final RedisClient redisClient;
+
+    /**
+     * 流键前缀
+     */
+    private String keyPrefix = "heart:";
+
+    /**
+     * 每个流保留的大约样本数
+     */
+    private long maxLength = 100000;
+
+    /**
+     * 每个设备缓冲的样本数达到该值时立即发送
+     */
+    private int batchSize = 256;
+
+    /**
+     * 缓冲发送周期(毫秒)
+     */
+    private long flushIntervalMillis = 100;
+
+    /**
+     * XREAD COUNT
+     */
+    private int readCount = 1000;
+
+    /**
+     * XREAD BLOCK(毫秒)
+     */
+    private long blockMillis = 1000;
+
+    /**
+     * 单次发送超时(毫秒)
+     */
+    private long commandTimeoutMillis = 10000;
+
+    /**
+     * 缓冲: db:deviceId -> 编码后的样本
+     */
+    private final Map<String, List<Sample>> buffers = new HashMap<>();
+
+    /**
+     * db:deviceId -> 最后分配的流 id {毫秒, 序号}
+     */
+    private final Map<String, long[]> lastIds = new HashMap<>();
+
+    /**
+     * redis 不可用时最多保留的样本数
+     */
+    private int maxBuffered = 1000000;
+
+    private final AtomicLong appended = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong sends = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile String lastError;
+
+    /**
+     * held while draining and sending, keeps a single writer per stream
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * a flush was requested by a full buffer and has not started yet
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    public HeartStream(RedisClient redisClient) {
+        Assert.notNull(redisClient, "redis client is null");
+        this.redisClient = redisClient;
+    }
+
+    /**
+     * buffer samples of a device, they are written by the next flush
+     *
+     * @param deviceId device
+     * @param samples  samples in time order
+     * @param index    the index of database
+     */
+    public void appendSamples(String deviceId, List<Heart> samples, int index) {
+        Assert.hasText(deviceId, "deviceId is null or empty");
+        Assert.notNull(samples, "samples is null");
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+        if (samples.isEmpty()) {
+            return;
+        }
+        start();
+        String id = index + ":" + deviceId;
+        boolean full;
+        synchronized (buffers) {
+            List<Sample> buffer = buffers.get(id);
+            if (buffer == null) {
+                buffer = new ArrayList<>();
+                buffers.put(id, buffer);
+            }
+            long[] last = lastIds.get(id);
+            if (last == null) {
+                last = new long[]{-1, 0};
+                lastIds.put(id, last);
+            }
+            for (Heart sample : samples) {
+                long millis = sample.getMonitoredTime() * 1000L;
+                if (millis > last[0]) {
+                    last[0] = millis;
+                    last[1] = 0;
+                } else {
+                    last[1]++;
+                }
+                buffer.add(new Sample((last[0] + "-" + last[1]).getBytes(UTF8), HeartCodec.encode(sample)));
+            }
+            full = buffer.size() >= batchSize;
+        }
+        appended.addAndGet(samples.size());
+        if (full) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * wake the flush thread, the samples are sent by it rather than by the caller so that two threads never
+     * append to the same stream at once
+     */
+    private synchronized void requestFlush() {
+        if (scheduler == null || !flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(this::flushQuietly);
+        } catch (RejectedExecutionException e) {
+            // shutting down, destroy sends the buffers
+            flushRequested.set(false);
+        }
+    }
+
+    /**
+     * send every buffered sample
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            Map<Integer, Map<String, List<Sample>>> byIndex = new HashMap<>();
+            synchronized (buffers) {
+                for (Map.Entry<String, List<Sample>> entry : buffers.entrySet()) {
+                    String id = entry.getKey();
+                    int separator = id.indexOf(':');
+                    Integer index = Integer.valueOf(id.substring(0, separator));
+                    Map<String, List<Sample>> devices = byIndex.get(index);
+                    if (devices == null) {
+                        devices = new LinkedHashMap<>();
+                        byIndex.put(index, devices);
+                    }
+                    devices.put(id.substring(separator + 1), entry.getValue());
+                }
+                buffers.clear();
+            }
+            for (Map.Entry<Integer, Map<String, List<Sample>>> entry : byIndex.entrySet()) {
+                send(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("===心电图写入异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        }
+    }
+
+    /**
+     * pipeline the XADDs of the given devices on one connection
+     *
+     * @param index   the index of database
+     * @param devices deviceId -> samples
+     */
+    private void send(int index, Map<String, List<Sample>> devices) {
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            Assert.state(!redisClient.hasBacklog(), "the write spool has a backlog");
+            connection = redisClient.getConn(index);
+        } catch (Exception e) {
+            // redis is unreachable or the spool is replaying, keep the samples for the next flush
+            lastError = e.getMessage();
+            logger.error("===心电图写入获取连接异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            requeue(index, devices);
+            return;
+        }
+        Map<String, List<RedisFuture<List<Object>>>> dispatched = new HashMap<>();
+        Map<String, List<Sample>> failed = new LinkedHashMap<>();
+        try {
+            byte[] maxLength = String.valueOf(this.maxLength).getBytes(UTF8);
+            for (Map.Entry<String, List<Sample>> entry : devices.entrySet()) {
+                byte[] key = (keyPrefix + entry.getKey()).getBytes(UTF8);
+                List<RedisFuture<List<Object>>> futures = new ArrayList<>();
+                dispatched.put(entry.getKey(), futures);
+                for (Sample sample : entry.getValue()) {
+                    futures.add(RawCommands.dispatch(connection, "XADD", key, MAXLEN, APPROXIMATE, maxLength, sample.id, FIELD, sample.data));
+                }
+            }
+        } catch (Exception e) {
+            // the samples not dispatched are put back below
+            lastError = e.getMessage();
+            logger.error("===心电图写入异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        }
+        try {
+            long deadline = System.currentTimeMillis() + commandTimeoutMillis;
+            for (Map.Entry<String, List<Sample>> entry : devices.entrySet()) {
+                List<RedisFuture<List<Object>>> futures = dispatched.get(entry.getKey());
+                List<Sample> samples = entry.getValue();
+                for (int i = 0; i < samples.size(); i++) {
+                    RedisFuture<List<Object>> future = futures != null && i < futures.size() ? futures.get(i) : null;
+                    if (future == null || !acknowledged(samples.get(i), future, deadline)) {
+                        // resend from the first failure on, the later samples may not have been applied either
+                        List<Sample> retry = new ArrayList<>(samples.subList(i, samples.size()));
+                        for (Sample sample : retry) {
+                            sample.retried = true;
+                        }
+                        failed.put(entry.getKey(), retry);
+                        break;
+                    }
+                }
+            }
+            sends.incrementAndGet();
+        } finally {
+            redisClient.returnConn(connection);
+        }
+        if (!failed.isEmpty()) {
+            requeue(index, failed);
+        }
+    }
+
+    /**
+     * wait for one XADD
+     *
+     * @return false if it failed or timed out and the sample should be sent again, true if redis answered, a
+     * rejected sample is counted as an error and not sent again
+     */
+    private boolean acknowledged(Sample sample, RedisFuture<List<Object>> future, long deadline) {
+        try {
+            if (!future.await(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                lastError = "timeout";
+                return false;
+            }
+            List<Object> reply = future.get();
+            if (reply != null && !reply.isEmpty() && reply.get(0) instanceof RedisCommandExecutionException) {
+                String error = ((RedisCommandExecutionException) reply.get(0)).getMessage();
+                if (sample.retried && error != null && error.contains("equal or smaller")) {
+                    // applied by the attempt that timed out or failed
+                    written.incrementAndGet();
+                } else {
+                    errors.incrementAndGet();
+                    lastError = error;
+                }
+            } else {
+                written.incrementAndGet();
+            }
+            return true;
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            return false;
+        }
+    }
+
+    /**
+     * put samples back in front of the samples buffered since, samples beyond {@code maxBuffered} are dropped
+     */
+    private void requeue(int index, Map<String, List<Sample>> devices) {
+        synchronized (buffers) {
+            int room = maxBuffered - getBuffered();
+            for (Map.Entry<String, List<Sample>> entry : devices.entrySet()) {
+                if (entry.getValue().size() > room) {
+                    dropped.addAndGet(entry.getValue().size());
+                    continue;
+                }
+                room -= entry.getValue().size();
+                String id = index + ":" + entry.getKey();
+                List<Sample> buffer = buffers.get(id);
+                if (buffer != null) {
+                    entry.getValue().addAll(buffer);
+                }
+                buffers.put(id, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * block-read the samples of a device after {@code lastId}
+     *
+     * @param deviceId device
+     * @param lastId   id of the last sample read, {@code 0} for the start of the stream, {@code $} for new samples
+     * @param index    the index of database
+     * @return stream id -> sample in stream order, empty if nothing arrived within {@code blockMillis}
+     */
+    public LinkedHashMap<String, Heart> read(String deviceId, String lastId, int index) {
+        Assert.hasText(deviceId, "deviceId is null or empty");
+        Assert.hasText(lastId, "lastId is null or empty");
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+        LinkedHashMap<String, Heart> samples = new LinkedHashMap<>();
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            connection = redisClient.getConn(index);
+            RedisFuture<List<Object>> future = RawCommands.dispatch(connection, "XREAD",
+                    "COUNT".getBytes(UTF8), String.valueOf(readCount).getBytes(UTF8),
+                    "BLOCK".getBytes(UTF8), String.valueOf(blockMillis).getBytes(UTF8),
+                    "STREAMS".getBytes(UTF8), (keyPrefix + deviceId).getBytes(UTF8), lastId.getBytes(UTF8));
+            if (!future.await(blockMillis + commandTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("XREAD timeout");
+            }
+            String error = RawCommands.error(future);
+            if (error != null) {
+                throw new IllegalStateException(error);
+            }
+            parse(future.get(), samples);
+        } catch (Exception e) {
+            logger.error("===心电图读取异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                redisClient.returnConn(connection);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * parse {@code [[key, [[id, [field, value]], ...]]]}, a timed out XREAD replies a null multi-bulk which
+     * {@link RawCommands} collects as {@code [null]}
+     */
+    @SuppressWarnings("unchecked")
+    static void parse(List<Object> reply, Map<String, Heart> samples) {
+        if (reply == null) {
+            return;
+        }
+        for (Object stream : reply) {
+            if (!(stream instanceof List)) {
+                continue;
+            }
+            List<Object> entries = (List<Object>) ((List<Object>) stream).get(1);
+            for (Object item : entries) {
+                List<Object> entry = (List<Object>) item;
+                String id = new String((byte[]) entry.get(0), UTF8);
+                List<Object> fields = (List<Object>) entry.get(1);
+                for (int i = 0; i + 1 < fields.size(); i += 2) {
+                    if (Arrays.equals(FIELD, (byte[]) fields.get(i))) {
+                        samples.put(id, HeartCodec.decode((byte[]) fields.get(i + 1)));
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized void start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "redis-heart-stream");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * send the remaining samples and stop the flush thread
+     */
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        flush();
+    }
+
+    /**
+     * @return samples accepted by {@link #appendSamples}
+     */
+    public long getAppended() {
+        return appended.get();
+    }
+
+    /**
+     * @return samples acknowledged by redis
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return samples rejected by redis
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return pipelined sends
+     */
+    public long getSends() {
+        return sends.get();
+    }
+
+    /**
+     * @return samples waiting in the buffers
+     */
+    public int getBuffered() {
+        int buffered = 0;
+        synchronized (buffers) {
+            for (List<Sample> buffer : buffers.values()) {
+                buffered += buffer.size();
+            }
+        }
+        return buffered;
+    }
+
+    /**
+     * @return samples dropped because redis was unreachable and the buffers were full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        Assert.notNull(keyPrefix, "keyPrefix is null");
+        this.keyPrefix = keyPrefix;
+    }
+
+    public void setMaxLength(long maxLength) {
+        Assert.isTrue(maxLength > 0, "maxLength must be positive");
+        this.maxLength = maxLength;
+    }
+
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void setMaxBuffered(int maxBuffered) {
+        this.maxBuffered = maxBuffered;
+    }
+
+    public void setReadCount(int readCount) {
+        Assert.isTrue(readCount > 0, "readCount must be positive");
+        this.readCount = readCount;
+    }
+
+    public void setBlockMillis(long blockMillis) {
+        this.blockMillis = blockMillis;
+    }
+
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    /**
+     * 待写入的样本
+     */
+    private static final class Sample {
+
+        private final byte[] id;
+
+        private final byte[] data;
+
+        /**
+         * sent before without an answer, it may already be in the stream
+         */
+        private boolean retried;
+
+        private Sample(byte[] id, byte[] data) {
+            this.id = id;
+            this.data = data;
+        }
+    }
+}
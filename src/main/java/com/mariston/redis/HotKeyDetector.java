@@ -0,0 +1,554 @@
+package com.mariston.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热点键/大键检测
+ * <p>
+ * one in {@code sampleRate} accesses of {@link RedisClient} is counted in a Count-Min sketch and in a striped
+ * Space-Saving summary of the {@code topK} most frequent (db, key) pairs; every access is checked against a
+ * striped top-K of the largest values. The sketch is updated lock-free, each summary stripe has its own lock,
+ * and memory is bounded by {@code depth * width} counters plus {@code 2 * stripes * topK} entries.
+ * Counts are halved every {@code windowMillis} so the top-K follows the current traffic.
+ * <p>
+ * listeners are called on the caller thread of {@link RedisClient} and must not block.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class HotKeyDetector implements HotKeyDetectorMBean, InitializingBean, DisposableBean {
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(HotKeyDetector.class);
+
+    /**
+     * Count-Min 行数
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * Count-Min 列数, 2的幂
+     */
+    private int width = 1 << 14;
+
+    /**
+     * Count-Min 计数器
+     */
+    private AtomicLongArray sketch = new AtomicLongArray(DEPTH * width);
+
+    /**
+     * top-K 的 K
+     */
+    private int topK = 20;
+
+    /**
+     * 分段数, 2的幂
+     */
+    private int stripes = 8;
+
+    /**
+     * 采样率, 每 N 次访问统计一次
+     */
+    private volatile int sampleRate = 1;
+
+    /**
+     * 热点告警阈值(每个窗口的估计访问次数), 0 不告警
+     */
+    private volatile long hotThreshold;
+
+    /**
+     * 大键告警阈值(字节), 0 不告警
+     */
+    private volatile long bigValueThreshold;
+
+    /**
+     * 衰减窗口(毫秒)
+     */
+    private long windowMillis = 60000;
+
+    /**
+     * 告警回调
+     */
+    private final List<HotKeyListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * JMX 名称, 为空则不注册
+     */
+    private String objectName = "com.mariston.redis:type=HotKeyDetector";
+
+    private FrequencySummary[] frequencies = frequencies();
+
+    private SizeSummary[] sizes = sizes();
+
+    /**
+     * 当前窗口内已告警的热点键
+     */
+    private final ConcurrentMap<String, Boolean> alerted = new ConcurrentHashMap<>();
+
+    /**
+     * 当前窗口内已告警的大键
+     */
+    private final ConcurrentMap<String, Boolean> alertedBig = new ConcurrentHashMap<>();
+
+    private final AtomicLong hotAlerts = new AtomicLong();
+
+    private final AtomicLong bigAlerts = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * record an access of {@link RedisClient}
+     *
+     * @param index the index of database
+     * @param key   key
+     * @param bytes size of the value read or written
+     * @param write true for writes
+     */
+    public void record(int index, String key, long bytes, boolean write) {
+        try {
+            int hash = hash(index, key);
+            if (bytes > 0) {
+                sizes[hash & (stripes - 1)].offer(index, key, bytes, write, topK);
+                long threshold = bigValueThreshold;
+                if (threshold > 0 && bytes >= threshold && alertedBig.size() < 10000
+                        && alertedBig.putIfAbsent(index + ":" + key, Boolean.TRUE) == null) {
+                    bigAlerts.incrementAndGet();
+                    for (HotKeyListener listener : listeners) {
+                        listener.onBigKey(index, key, bytes, write);
+                    }
+                }
+            }
+            int rate = sampleRate;
+            if (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0) {
+                return;
+            }
+            long estimate = add(hash, rate);
+            frequencies[hash & (stripes - 1)].offer(index, key, rate, topK);
+            long threshold = hotThreshold;
+            if (threshold > 0 && estimate >= threshold && alerted.size() < 10000
+                    && alerted.putIfAbsent(index + ":" + key, Boolean.TRUE) == null) {
+                hotAlerts.incrementAndGet();
+                for (HotKeyListener listener : listeners) {
+                    listener.onHotKey(index, key, estimate);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("===热点键统计异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        }
+    }
+
+    /**
+     * @param index the index of database
+     * @param key   key
+     * @return estimated accesses of the key in the current window, never underestimated
+     */
+    public long estimate(int index, String key) {
+        int hash = hash(index, key);
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, sketch.get(slot(hash, i)));
+        }
+        return min;
+    }
+
+    /**
+     * @return the most accessed keys, hottest first
+     */
+    public List<KeyStat> getTopHotKeys() {
+        List<KeyStat> result = new ArrayList<>();
+        for (FrequencySummary summary : frequencies) {
+            summary.copyTo(result);
+        }
+        return top(result);
+    }
+
+    /**
+     * @return the largest values, largest first
+     */
+    public List<KeyStat> getTopBigKeys() {
+        List<KeyStat> result = new ArrayList<>();
+        for (SizeSummary summary : sizes) {
+            summary.copyTo(result);
+        }
+        return top(result);
+    }
+
+    private List<KeyStat> top(List<KeyStat> stats) {
+        Collections.sort(stats, (a, b) -> Long.compare(b.value, a.value));
+        return stats.size() > topK ? new ArrayList<>(stats.subList(0, topK)) : stats;
+    }
+
+    /**
+     * halve every counter, called once per window
+     */
+    void decay() {
+        for (int i = 0; i < sketch.length(); i++) {
+            long value = sketch.get(i);
+            if (value != 0) {
+                // a concurrent increment may be lost, which only lowers the estimate of the old window
+                sketch.compareAndSet(i, value, value >> 1);
+            }
+        }
+        for (FrequencySummary summary : frequencies) {
+            summary.decay();
+        }
+        alerted.clear();
+        alertedBig.clear();
+    }
+
+    private long add(int hash, long weight) {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, sketch.addAndGet(slot(hash, i), weight));
+        }
+        return min;
+    }
+
+    private int slot(int hash, int row) {
+        int h = hash + row * mix(hash ^ 0x5bd1e995);
+        return row * width + (mix(h) & (width - 1));
+    }
+
+    private static int hash(int index, String key) {
+        return mix(31 * key.hashCode() + index);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private FrequencySummary[] frequencies() {
+        FrequencySummary[] result = new FrequencySummary[stripes];
+        for (int i = 0; i < stripes; i++) {
+            result[i] = new FrequencySummary();
+        }
+        return result;
+    }
+
+    private SizeSummary[] sizes() {
+        SizeSummary[] result = new SizeSummary[stripes];
+        for (int i = 0; i < stripes; i++) {
+            result[i] = new SizeSummary();
+        }
+        return result;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        if (windowMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "redis-hot-key-decay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::decay, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        }
+        if (objectName != null && !objectName.isEmpty()) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(objectName);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(this, name);
+                }
+            } catch (Exception e) {
+                logger.warn("===注册JMX失败:{}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (objectName != null && !objectName.isEmpty()) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        }
+    }
+
+    @Override
+    public String[] getHotKeys() {
+        List<KeyStat> stats = getTopHotKeys();
+        String[] result = new String[stats.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = stats.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public String[] getBigKeys() {
+        List<KeyStat> stats = getTopBigKeys();
+        String[] result = new String[stats.size()];
+        for (int i = 0; i < result.length; i++) {
+            KeyStat stat = stats.get(i);
+            result[i] = stat + (stat.write ? " (write)" : " (read)");
+        }
+        return result;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void setSampleRate(int sampleRate) {
+        Assert.isTrue(sampleRate > 0, "sampleRate must be positive");
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public long getHotThreshold() {
+        return hotThreshold;
+    }
+
+    @Override
+    public void setHotThreshold(long hotThreshold) {
+        this.hotThreshold = hotThreshold;
+    }
+
+    @Override
+    public long getBigValueThreshold() {
+        return bigValueThreshold;
+    }
+
+    @Override
+    public void setBigValueThreshold(long bigValueThreshold) {
+        this.bigValueThreshold = bigValueThreshold;
+    }
+
+    @Override
+    public long getHotAlerts() {
+        return hotAlerts.get();
+    }
+
+    @Override
+    public long getBigAlerts() {
+        return bigAlerts.get();
+    }
+
+    @Override
+    public void reset() {
+        sketch = new AtomicLongArray(DEPTH * width);
+        frequencies = frequencies();
+        sizes = sizes();
+        alerted.clear();
+        alertedBig.clear();
+    }
+
+    public void setWidth(int width) {
+        Assert.isTrue(width > 0 && Integer.bitCount(width) == 1, "width must be a power of two");
+        this.width = width;
+        reset();
+    }
+
+    public void setStripes(int stripes) {
+        Assert.isTrue(stripes > 0 && Integer.bitCount(stripes) == 1, "stripes must be a power of two");
+        this.stripes = stripes;
+        reset();
+    }
+
+    public void setTopK(int topK) {
+        Assert.isTrue(topK > 0, "topK must be positive");
+        this.topK = topK;
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void setObjectName(String objectName) {
+        this.objectName = objectName;
+    }
+
+    public void setListeners(List<HotKeyListener> listeners) {
+        this.listeners.clear();
+        this.listeners.addAll(listeners);
+    }
+
+    public void addListener(HotKeyListener listener) {
+        this.listeners.add(listener);
+    }
+
+    List<HotKeyListener> getListeners() {
+        return Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * 键的统计值
+     */
+    public static final class KeyStat {
+
+        private final int index;
+        private final String key;
+        private final long value;
+        private final long error;
+        private final boolean write;
+
+        KeyStat(int index, String key, long value, long error, boolean write) {
+            this.index = index;
+            this.key = key;
+            this.value = value;
+            this.error = error;
+            this.write = write;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return access count for hot keys, value size in bytes for big keys
+         */
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * @return the maximum overestimation of an access count
+         */
+        public long getError() {
+            return error;
+        }
+
+        public boolean isWrite() {
+            return write;
+        }
+
+        @Override
+        public String toString() {
+            return index + ":" + key + "=" + value;
+        }
+    }
+
+    /**
+     * Space-Saving 计数
+     */
+    private static final class Counter {
+        int index;
+        String key;
+        long count;
+        long error;
+    }
+
+    /**
+     * Space-Saving summary of one stripe
+     */
+    private static final class FrequencySummary {
+
+        private final Map<String, Counter> counters = new HashMap<>();
+
+        synchronized void offer(int index, String key, long weight, int capacity) {
+            String id = index + ":" + key;
+            Counter counter = counters.get(id);
+            if (counter == null) {
+                if (counters.size() < capacity) {
+                    counter = new Counter();
+                } else {
+                    // replace the minimum, the new key inherits its count as error
+                    Counter min = null;
+                    for (Counter candidate : counters.values()) {
+                        if (min == null || candidate.count < min.count) {
+                            min = candidate;
+                        }
+                    }
+                    counters.remove(min.index + ":" + min.key);
+                    counter = min;
+                    counter.error = min.count;
+                }
+                counter.index = index;
+                counter.key = key;
+                counters.put(id, counter);
+            }
+            counter.count += weight;
+        }
+
+        synchronized void decay() {
+            for (Counter counter : counters.values()) {
+                counter.count >>= 1;
+                counter.error >>= 1;
+            }
+        }
+
+        synchronized void copyTo(List<KeyStat> stats) {
+            for (Counter counter : counters.values()) {
+                stats.add(new KeyStat(counter.index, counter.key, counter.count, counter.error, false));
+            }
+        }
+    }
+
+    /**
+     * top-K largest values of one stripe
+     */
+    private static final class SizeSummary {
+
+        private final Map<String, KeyStat> byKey = new HashMap<>();
+
+        private final PriorityQueue<KeyStat> bySize = new PriorityQueue<>((a, b) -> Long.compare(a.value, b.value));
+
+        /**
+         * smallest size kept once the stripe is full, read without the lock to skip small values
+         */
+        private volatile long floor;
+
+        void offer(int index, String key, long bytes, boolean write, int capacity) {
+            if (bytes <= floor) {
+                return;
+            }
+            synchronized (this) {
+                String id = index + ":" + key;
+                KeyStat previous = byKey.remove(id);
+                if (previous != null) {
+                    bySize.remove(previous);
+                }
+                KeyStat stat = new KeyStat(index, key, bytes, 0, write);
+                byKey.put(id, stat);
+                bySize.add(stat);
+                while (bySize.size() > capacity) {
+                    KeyStat smallest = bySize.poll();
+                    byKey.remove(smallest.index + ":" + smallest.key);
+                }
+                floor = bySize.size() < capacity ? 0 : bySize.peek().value;
+            }
+        }
+
+        synchronized void copyTo(List<KeyStat> stats) {
+            stats.addAll(bySize);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mariston.redis;
+
+/**
+ * JMX view of {@link HotKeyDetector}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public interface HotKeyDetectorMBean {
+
+    /**
+     * @return the most accessed keys as {@code db:key=count}, hottest first
+     */
+    String[] getHotKeys();
+
+    /**
+     * @return the largest values as {@code db:key=bytes (read|write)}, largest first
+     */
+    String[] getBigKeys();
+
+    /**
+     * @return one in how many accesses is sampled
+     */
+    int getSampleRate();
+
+    /**
+     * @param sampleRate one in how many accesses is sampled
+     */
+    void setSampleRate(int sampleRate);
+
+    /**
+     * @return estimated accesses per window that raise a hot key alert, 0 disables
+     */
+    long getHotThreshold();
+
+    /**
+     * @param hotThreshold estimated accesses per window that raise a hot key alert, 0 disables
+     */
+    void setHotThreshold(long hotThreshold);
+
+    /**
+     * @return value size in bytes that raises a big key alert, 0 disables
+     */
+    long getBigValueThreshold();
+
+    /**
+     * @param bigValueThreshold value size in bytes that raises a big key alert, 0 disables
+     */
+    void setBigValueThreshold(long bigValueThreshold);
+
+    /**
+     * @return number of hot key alerts raised
+     */
+    long getHotAlerts();
+
+    /**
+     * @return number of big key alerts raised
+     */
+    long getBigAlerts();
+
+    /**
+     * clear the sketch and both top-K lists
+     */
+    void reset();
+}
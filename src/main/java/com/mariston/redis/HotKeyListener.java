@@ -0,0 +1,30 @@
+package com.mariston.redis;
+
+/**
+ * 热点键/大键告警回调
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public interface HotKeyListener {
+
+    /**
+     * called once per decay window when the estimated access count of a key reaches the hot threshold
+     *
+     * @param index    the index of database
+     * @param key      key
+     * @param estimate estimated accesses in the current window
+     */
+    void onHotKey(int index, String key, long estimate);
+
+    /**
+     * called once per decay window when a value read or written is larger than the big value threshold
+     *
+     * @param index the index of database
+     * @param key   key
+     * @param bytes size of the value
+     * @param write true for writes, false for reads
+     */
+    void onBigKey(int index, String key, long bytes, boolean write);
+}
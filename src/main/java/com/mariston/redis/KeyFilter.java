@@ -0,0 +1,360 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.KeyScanCursor;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.ScanArgs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 键过滤器
+ * <p>
+ * a lock-free Bloom filter per database answers "the key certainly does not exist", so {@link RedisClient} can
+ * return a miss without a round trip. Keys written through {@link RedisClient}, {@link RedisBatch},
+ * {@link WriteSpool} and {@link BulkLoader} are added when the write is made and again when redis acknowledges
+ * it, so a rebuild whose SCAN ran before a pending write landed does not drop the key. Keys written by other
+ * clients only become visible after the next rebuild, which SCANs the database every
+ * {@code rebuildIntervalMillis} into a fresh filter sized from DBSIZE. A database answers "may exist" for every
+ * key until its first rebuild has finished, so only enable databases whose keys are written by this client or
+ * whose staleness is bounded by the rebuild interval.
+ * <p>
+ * deleted keys stay in the filter until the next rebuild, so the observed false-positive rate (lookups that
+ * passed the filter and missed) includes deletions.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class KeyFilter implements DisposableBean {
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(KeyFilter.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * 启用过滤的数据库
+     */
+    private Set<Integer> databases = Collections.emptySet();
+
+    /**
+     * 预计键数, 实际大小取 DBSIZE 的两倍和该值中的大者
+     */
+    private long expectedInsertions = 1000000;
+
+    /**
+     * 目标误判率
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * 重建周期(毫秒)
+     */
+    private long rebuildIntervalMillis = 10 * 60 * 1000;
+
+    /**
+     * SCAN COUNT
+     */
+    private int scanCount = 1000;
+
+    /**
+     * 可用的过滤器
+     */
+    private final ConcurrentMap<Integer, Bits> filters = new ConcurrentHashMap<>();
+
+    /**
+     * 重建中的过滤器, 重建期间的写入同时加入
+     */
+    private final ConcurrentMap<Integer, Bits> building = new ConcurrentHashMap<>();
+
+    private final LongAdder checks = new LongAdder();
+
+    private final LongAdder avoided = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private RedisClient redisClient;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param index the index of database
+     * @param key   key
+     * @return false only if the key certainly does not exist
+     */
+    public boolean mightContain(int index, String key) {
+        Bits bits = filters.get(index);
+        if (bits == null) {
+            return true;
+        }
+        checks.increment();
+        if (bits.mightContain(key.getBytes(UTF8))) {
+            return true;
+        }
+        avoided.increment();
+        return false;
+    }
+
+    /**
+     * record a key that may have been created
+     *
+     * @param index the index of database
+     * @param key   key
+     */
+    public void add(int index, byte[] key) {
+        // read the filter being built first: it is published to filters before it leaves building
+        Bits next = building.get(index);
+        if (next != null) {
+            next.add(key);
+        }
+        Bits bits = filters.get(index);
+        if (bits != null && bits != next) {
+            bits.add(key);
+        }
+    }
+
+    /**
+     * called by {@link RedisClient} when a lookup that passed the filter missed
+     *
+     * @param index the index of database
+     */
+    void onMiss(int index) {
+        if (filters.containsKey(index)) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * answer "may exist" for a database until its next rebuild, e.g. before it is flushed
+     *
+     * @param index the index of database
+     */
+    void invalidate(int index) {
+        filters.remove(index);
+    }
+
+    /**
+     * SCAN a database into a fresh filter and swap it in
+     *
+     * @param index the index of database
+     * @return keys scanned, -1 if the rebuild failed
+     */
+    public long rebuild(int index) {
+        Assert.state(redisClient != null, "the filter is not attached to a redis client");
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        long keys = 0;
+        try {
+            connection = redisClient.getConn(index);
+            long size = connection.dbsize().get(60, TimeUnit.SECONDS);
+            Bits bits = new Bits(Math.max(expectedInsertions, size * 2), falsePositiveRate);
+            building.put(index, bits);
+            ScanArgs args = new ScanArgs().limit(scanCount);
+            KeyScanCursor<byte[]> cursor = connection.scan(args).get(60, TimeUnit.SECONDS);
+            while (true) {
+                for (byte[] key : cursor.getKeys()) {
+                    bits.add(key);
+                    keys++;
+                }
+                if (cursor.isFinished()) {
+                    break;
+                }
+                cursor = connection.scan(cursor, args).get(60, TimeUnit.SECONDS);
+            }
+            filters.put(index, bits);
+            logger.info("===键过滤器重建完成, db {}: {} 个键", index, keys);
+            return keys;
+        } catch (Exception e) {
+            logger.error("===键过滤器重建异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            return -1;
+        } finally {
+            building.remove(index);
+            if (connection != null) {
+                redisClient.returnConn(connection);
+            }
+        }
+    }
+
+    /**
+     * bind to the client and schedule the rebuilds
+     *
+     * @param redisClient {@link RedisClient}
+     */
+    synchronized void attach(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        if (scheduler == null && !databases.isEmpty()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "redis-key-filter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                for (Integer index : databases) {
+                    rebuild(index);
+                }
+            }, 0, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return lookups answered by a ready filter
+     */
+    public long getChecks() {
+        return checks.sum();
+    }
+
+    /**
+     * @return round trips avoided because the key certainly did not exist
+     */
+    public long getAvoided() {
+        return avoided.sum();
+    }
+
+    /**
+     * @return lookups that passed a ready filter and missed
+     */
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * @return observed false positives among the lookups of absent keys
+     */
+    public double getFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long negatives = fp + avoided.sum();
+        return negatives == 0 ? 0 : (double) fp / negatives;
+    }
+
+    /**
+     * @param index the index of database
+     * @return false-positive rate expected from the fill of the filter, -1 if the database has no filter yet
+     */
+    public double getExpectedFalsePositiveRate(int index) {
+        Bits bits = filters.get(index);
+        return bits == null ? -1 : bits.expectedFalsePositiveRate();
+    }
+
+    public void setDatabases(Set<Integer> databases) {
+        this.databases = databases == null ? Collections.<Integer>emptySet() : new TreeSet<>(databases);
+    }
+
+    public void setExpectedInsertions(long expectedInsertions) {
+        Assert.isTrue(expectedInsertions > 0, "expectedInsertions must be positive");
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        Assert.isTrue(falsePositiveRate > 0 && falsePositiveRate < 1, "falsePositiveRate must be between 0 and 1");
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    public void setRebuildIntervalMillis(long rebuildIntervalMillis) {
+        Assert.isTrue(rebuildIntervalMillis > 0, "rebuildIntervalMillis must be positive");
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+    }
+
+    public void setScanCount(int scanCount) {
+        this.scanCount = scanCount;
+    }
+
+    /**
+     * 位图, 双重哈希定位 {@code hashes} 个位
+     */
+    static final class Bits {
+
+        private final AtomicLongArray words;
+
+        private final long size;
+
+        private final int hashes;
+
+        Bits(long expectedInsertions, double falsePositiveRate) {
+            long bits = (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            long wordCount = Math.max(1, (bits + 63) / 64);
+            Assert.isTrue(wordCount <= Integer.MAX_VALUE, "the filter is too large");
+            this.words = new AtomicLongArray((int) wordCount);
+            this.size = wordCount * 64;
+            this.hashes = Math.max(1, (int) Math.round((double) size / expectedInsertions * Math.log(2)));
+        }
+
+        void add(byte[] key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 + 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % size;
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                if ((words.get(word) & mask) == 0) {
+                    words.accumulateAndGet(word, mask, (a, b) -> a | b);
+                }
+            }
+        }
+
+        boolean mightContain(byte[] key) {
+            long h1 = hash(key);
+            long h2 = mix(h1 + 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % size;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double expectedFalsePositiveRate() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return Math.pow((double) set / size, hashes);
+        }
+
+        int getHashes() {
+            return hashes;
+        }
+
+        /**
+         * FNV-1a followed by the murmur3 finalizer
+         */
+        private static long hash(byte[] key) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : key) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisCommandExecutionException;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.codec.ByteArrayCodec;
+import com.lambdaworks.redis.output.NestedMultiOutput;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.ProtocolKeyword;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 原始命令发送, 用于 lettuce 未提供 API 的命令及批量导入
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+abstract class RawCommands {
+
+    /**
+     * 命令名称缓存
+     */
+    private static final ConcurrentMap<String, ProtocolKeyword> KEYWORDS = new ConcurrentHashMap<>();
+
+    /**
+     * send a command without waiting for the reply, replies are collected as nested lists of
+     * {@code byte[]}, {@code Long} and {@link RedisCommandExecutionException}, a null bulk or multi-bulk reply is
+     * collected as {@code null}
+     *
+     * @param connection connection
+     * @param command    command name
+     * @param args       arguments
+     * @return {@link RedisFuture}
+     */
+    static RedisFuture<List<Object>> dispatch(RedisAsyncConnection<byte[], byte[]> connection, String command, byte[]... args) {
+        CommandArgs<byte[], byte[]> commandArgs = new CommandArgs<>(ByteArrayCodec.INSTANCE);
+        for (byte[] arg : args) {
+            commandArgs.add(arg);
+        }
+        return connection.dispatch(keyword(command), new NullableMultiOutput(), commandArgs);
+    }
+
+    /**
+     * send a command whose name is the first element of {@code command}
+     *
+     * @param connection connection
+     * @param command    command name and arguments
+     * @return {@link RedisFuture}
+     */
+    static RedisFuture<List<Object>> dispatch(RedisAsyncConnection<byte[], byte[]> connection, byte[][] command) {
+        CommandArgs<byte[], byte[]> commandArgs = new CommandArgs<>(ByteArrayCodec.INSTANCE);
+        for (int i = 1; i < command.length; i++) {
+            commandArgs.add(command[i]);
+        }
+        String name = new String(command[0], Charset.forName("UTF-8"));
+        return connection.dispatch(keyword(name), new NullableMultiOutput(), commandArgs);
+    }
+
+    /**
+     * the error of a completed command, or null
+     *
+     * @param future completed future
+     * @return error message
+     */
+    static String error(RedisFuture<List<Object>> future) {
+        if (future.getError() != null) {
+            return future.getError();
+        }
+        try {
+            List<Object> reply = future.get();
+            if (reply != null && !reply.isEmpty() && reply.get(0) instanceof RedisCommandExecutionException) {
+                return ((RedisCommandExecutionException) reply.get(0)).getMessage();
+            }
+        } catch (Exception e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * @param command command name
+     * @return cached {@link ProtocolKeyword}
+     */
+    private static ProtocolKeyword keyword(String command) {
+        String name = command.toUpperCase(Locale.ROOT);
+        ProtocolKeyword keyword = KEYWORDS.get(name);
+        if (keyword == null) {
+            final byte[] bytes = name.getBytes(Charset.forName("US-ASCII"));
+            keyword = () -> bytes;
+            ProtocolKeyword previous = KEYWORDS.putIfAbsent(name, keyword);
+            if (previous != null) {
+                keyword = previous;
+            }
+        }
+        return keyword;
+    }
+
+    /**
+     * {@link NestedMultiOutput} accepting a null multi-bulk ({@code *-1}, e.g. a timed out XREAD BLOCK), which
+     * the original fails with {@link IllegalArgumentException} and cancels the command
+     */
+    static class NullableMultiOutput extends NestedMultiOutput<byte[], byte[]> {
+
+        NullableMultiOutput() {
+            super(ByteArrayCodec.INSTANCE);
+        }
+
+        @Override
+        public void multi(int count) {
+            if (count < 0) {
+                set((ByteBuffer) null);
+                return;
+            }
+            super.multi(count);
+        }
+    }
+}
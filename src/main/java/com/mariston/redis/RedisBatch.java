@@ -0,0 +1,489 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisCommandExecutionException;
+import com.lambdaworks.redis.RedisFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量/事务命令
+ * <p>
+ * commands are queued by the builder methods and sent by {@link #execute()} on one connection with one SELECT,
+ * wrapped in MULTI/EXEC when {@code atomic} (the default) or as a plain pipeline otherwise. The result holds one
+ * typed reply per queued command, in queue order.
+ * <p>
+ * with {@link #watch} the keys are WATCHed before the commands are built; {@link #execute(Body)} rebuilds the
+ * commands from a fresh read of the watched keys and retries up to {@code maxRetries} times when EXEC is aborted
+ * because a watched key changed. Watching needs MULTI/EXEC, a watching batch can not be made non-atomic, and the
+ * keys are UNWATCHed before the connection is returned unless EXEC ran. A batch is not spooled, it fails while
+ * the {@link WriteSpool} of the client has a backlog.
+ * <pre>
+ * client.batch(0).put("a", "1").putMap("b", map).delField("c", "f").expire("a", 60).execute();
+ * </pre>
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public final class RedisBatch {
+
+    /**
+     * 事务内容, 每次尝试都会重新执行
+     */
+    public interface Body {
+
+        /**
+         * read the watched keys with {@link RedisBatch#read} and queue the commands
+         *
+         * @param batch the batch, emptied before every attempt
+         * @throws Exception to give up, the error is reported in the result
+         */
+        void build(RedisBatch batch) throws Exception;
+    }
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(RedisBatch.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final RedisClient redisClient;
+
+    private final int index;
+
+    private final List<Command> commands = new ArrayList<>();
+
+    /**
+     * 与命令一一对应的超时时长, 无超时为 null; 执行成功后才计入过期分布, 重试时不会重复计入
+     */
+    private final List<Long> expiries = new ArrayList<>();
+
+    /**
+     * 与命令一一对应的新建键, 执行成功后再次加入键过滤器; 不新建键为 null
+     */
+    private final List<byte[]> created = new ArrayList<>();
+
+    private byte[][] watched = new byte[0][];
+
+    private boolean atomic = true;
+
+    private int maxRetries = 3;
+
+    private long commandTimeoutMillis = 10000;
+
+    /**
+     * 执行中使用的连接, 供 {@link #read} 使用
+     */
+    private RedisAsyncConnection<byte[], byte[]> connection;
+
+    RedisBatch(RedisClient redisClient, int index) {
+        this.redisClient = redisClient;
+        this.index = index;
+    }
+
+    /**
+     * @param atomic true for MULTI/EXEC, false for a plain pipeline
+     * @return this
+     * @throws IllegalStateException if keys are watched and {@code atomic} is false
+     */
+    public RedisBatch atomic(boolean atomic) {
+        Assert.state(atomic || watched.length == 0, "watched keys need an atomic batch");
+        this.atomic = atomic;
+        return this;
+    }
+
+    /**
+     * WATCH keys before the commands are built
+     *
+     * @param keys keys
+     * @return this
+     * @throws IllegalStateException if the batch is not atomic
+     */
+    public RedisBatch watch(String... keys) {
+        Assert.notEmpty(keys, "keys is null or the size is zero");
+        Assert.state(atomic, "watched keys need an atomic batch");
+        for (String key : keys) {
+            watched = Arrays.copyOf(watched, watched.length + 1);
+            watched[watched.length - 1] = bytes(key);
+        }
+        return this;
+    }
+
+    /**
+     * @param maxRetries attempts after the first when a watched key changed
+     * @return this
+     */
+    public RedisBatch maxRetries(int maxRetries) {
+        Assert.isTrue(maxRetries >= 0, "maxRetries must not be negative");
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * @param commandTimeoutMillis timeout of the whole batch
+     * @return this
+     */
+    public RedisBatch commandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * SET, replies {@code OK}
+     */
+    public RedisBatch put(String key, String value) {
+        Assert.hasText(key, "key is empty");
+        final byte[] data = bytes(value);
+        redisClient.written(index, bytes(key));
+        return queue(connection -> connection.set(bytes(key), data), null, bytes(key));
+    }
+
+    /**
+     * SETEX, TTL adjusted by the {@link TtlPolicy} of the client, replies {@code OK}
+     */
+    public RedisBatch put(String key, long seconds, String value) {
+        Assert.hasText(key, "key is empty");
+        final byte[] data = bytes(value);
+        final long ttl = redisClient.jitter(seconds);
+        redisClient.written(index, bytes(key));
+        return queue(connection -> connection.setex(bytes(key), ttl, data), ttl, bytes(key));
+    }
+
+    /**
+     * SET of a serialized object, replies {@code OK}
+     */
+    public RedisBatch putObject(String key, Object value) {
+        Assert.hasText(key, "key is empty");
+        Assert.notNull(value, "value is null ");
+        final byte[] data = ByteUtils.objectToByteArray(value);
+        redisClient.written(index, bytes(key));
+        return queue(connection -> connection.set(bytes(key), data), null, bytes(key));
+    }
+
+    /**
+     * HMSET, replies {@code OK}
+     */
+    public RedisBatch putMap(String key, Map<String, String> map) {
+        Assert.hasText(key, "key is empty");
+        Assert.notEmpty(map, "map is null or the size is zero");
+        final Map<byte[], byte[]> value = new HashMap<>();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            value.put(bytes(entry.getKey()), bytes(entry.getValue()));
+        }
+        redisClient.written(index, bytes(key));
+        return queue(connection -> connection.hmset(bytes(key), value), null, bytes(key));
+    }
+
+    /**
+     * HDEL, replies the number of fields removed
+     */
+    public RedisBatch delField(String key, String... fields) {
+        Assert.hasText(key, "key is empty");
+        Assert.notEmpty(fields, "fields is null or the size is zero");
+        final byte[][] names = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = bytes(fields[i]);
+        }
+        return queue(connection -> connection.hdel(bytes(key), names), null, null);
+    }
+
+    /**
+     * DEL, replies the number of keys removed
+     */
+    public RedisBatch delete(String key) {
+        Assert.hasText(key, "key is empty");
+        return queue(connection -> connection.del(bytes(key)), null, null);
+    }
+
+    /**
+     * EXPIRE, TTL adjusted by the {@link TtlPolicy} of the client, replies whether the key exists
+     */
+    public RedisBatch expire(String key, long seconds) {
+        Assert.hasText(key, "key is empty");
+        final long ttl = redisClient.jitter(seconds);
+        return queue(connection -> connection.expire(bytes(key), ttl), ttl, null);
+    }
+
+    /**
+     * GET, replies the value as {@code byte[]}, see {@link Result#getString}
+     */
+    public RedisBatch get(String key) {
+        Assert.hasText(key, "key is empty");
+        return queue(connection -> connection.get(bytes(key)), null, null);
+    }
+
+    private RedisBatch queue(Command command, Long ttl, byte[] key) {
+        commands.add(command);
+        expiries.add(ttl);
+        created.add(key);
+        return this;
+    }
+
+    /**
+     * read a key on the connection of the batch, only valid inside {@link Body#build}
+     *
+     * @param key key
+     * @return value, null if the key does not exist
+     * @throws Exception if the read fails
+     */
+    public String read(String key) throws Exception {
+        Assert.state(connection != null, "read is only valid while the batch is executed");
+        byte[] data = connection.get(bytes(key)).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+        return data == null ? null : new String(data, UTF8);
+    }
+
+    /**
+     * send the queued commands
+     *
+     * @return {@link Result}
+     */
+    public Result execute() {
+        return execute(null);
+    }
+
+    /**
+     * build and send the commands, retried when a watched key changed
+     *
+     * @param body builds the commands of every attempt, null to send the queued commands
+     * @return {@link Result}
+     */
+    public Result execute(Body body) {
+        Result result = new Result();
+        // WATCH sent and not yet cleared by EXEC
+        boolean watching = false;
+        try {
+            // sent ahead of the spooled writes of the same keys, then overwritten when they are replayed
+            Assert.state(!redisClient.hasBacklog(), "the write spool has a backlog");
+            connection = redisClient.getConn(index);
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                result.attempts = attempt + 1;
+                if (watched.length > 0) {
+                    watching = true;
+                    connection.watch(watched).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+                if (body != null) {
+                    commands.clear();
+                    expiries.clear();
+                    created.clear();
+                    body.build(this);
+                }
+                List<Object> replies = atomic ? transaction() : pipeline();
+                watching = false;
+                if (replies != null) {
+                    result.replies = replies;
+                    result.aborted = false;
+                    count(replies);
+                    return result;
+                }
+                result.aborted = true;
+                if (body == null) {
+                    // the same commands would be sent again, only a rebuilt body can react to the change
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            result.error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+            logger.error("===批量执行异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                if (watching) {
+                    unwatch();
+                }
+                redisClient.returnConn(connection);
+                connection = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return replies, null if EXEC was aborted
+     */
+    private List<Object> transaction() throws Exception {
+        connection.multi();
+        try {
+            for (Command command : commands) {
+                command.send(connection);
+            }
+        } catch (Exception e) {
+            connection.discard();
+            throw e;
+        }
+        RedisFuture<List<Object>> exec = connection.exec();
+        List<Object> replies = exec.get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (exec.getError() != null) {
+            throw new IllegalStateException(exec.getError());
+        }
+        if (replies == null || replies.size() < commands.size()) {
+            return null;
+        }
+        return replies;
+    }
+
+    /**
+     * keep the WATCH of a failed attempt from aborting the next MULTI on the pooled connection
+     */
+    private void unwatch() {
+        try {
+            connection.unwatch().get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            logger.error("===批量执行UNWATCH异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        }
+    }
+
+    private List<Object> pipeline() throws Exception {
+        List<RedisFuture<?>> futures = new ArrayList<>(commands.size());
+        for (Command command : commands) {
+            futures.add(command.send(connection));
+        }
+        long deadline = System.currentTimeMillis() + commandTimeoutMillis;
+        List<Object> replies = new ArrayList<>(futures.size());
+        for (RedisFuture<?> future : futures) {
+            Object reply = future.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            replies.add(future.getError() != null ? new RedisCommandExecutionException(future.getError()) : reply);
+        }
+        return replies;
+    }
+
+    /**
+     * count the TTLs that were applied in the expiry distribution of the client and record the keys created in
+     * the key filter again, a rebuild that started before they landed did not see them
+     */
+    private void count(List<Object> replies) {
+        for (int i = 0; i < expiries.size() && i < replies.size(); i++) {
+            Object reply = replies.get(i);
+            if (created.get(i) != null && !(reply instanceof Exception)) {
+                redisClient.written(index, created.get(i));
+            }
+            if (expiries.get(i) != null && !(reply instanceof Exception) && !Boolean.FALSE.equals(reply)
+                    && !Long.valueOf(0).equals(reply)) {
+                redisClient.scheduled(expiries.get(i));
+            }
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF8);
+    }
+
+    /**
+     * @return number of queued commands
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * 排队的命令
+     */
+    private interface Command {
+
+        RedisFuture<?> send(RedisAsyncConnection<byte[], byte[]> connection);
+    }
+
+    /**
+     * 执行结果
+     */
+    public static final class Result {
+
+        private List<Object> replies = Collections.emptyList();
+
+        private boolean aborted;
+
+        private int attempts;
+
+        private String error;
+
+        /**
+         * @return true if every command was sent and EXEC was not aborted
+         */
+        public boolean isSuccess() {
+            return error == null && !aborted;
+        }
+
+        /**
+         * @return true if EXEC was aborted by a changed watched key on the last attempt
+         */
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        /**
+         * @return attempts made
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+
+        /**
+         * @return the error that stopped the batch, or null
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return number of replies
+         */
+        public int size() {
+            return replies.size();
+        }
+
+        /**
+         * @param i position of the command
+         * @return raw reply, a {@link RedisCommandExecutionException} if the command failed
+         */
+        public Object get(int i) {
+            return replies.get(i);
+        }
+
+        /**
+         * @param i position of the command
+         * @return the error of the command, or null
+         */
+        public String getError(int i) {
+            Object reply = replies.get(i);
+            return reply instanceof RedisCommandExecutionException ? ((RedisCommandExecutionException) reply).getMessage() : null;
+        }
+
+        /**
+         * @param i position of a SET/HMSET/GET command
+         * @return status or value
+         */
+        public String getString(int i) {
+            Object reply = replies.get(i);
+            if (reply instanceof byte[]) {
+                return new String((byte[]) reply, UTF8);
+            }
+            return reply == null || reply instanceof Exception ? null : reply.toString();
+        }
+
+        /**
+         * @param i position of a DEL/HDEL command
+         * @return count
+         */
+        public Long getLong(int i) {
+            Object reply = replies.get(i);
+            return reply instanceof Long ? (Long) reply : null;
+        }
+
+        /**
+         * @param i position of an EXPIRE command
+         * @return whether the key exists
+         */
+        public Boolean getBoolean(int i) {
+            Object reply = replies.get(i);
+            if (reply instanceof Long) {
+                return (Long) reply == 1L;
+            }
+            return reply instanceof Boolean ? (Boolean) reply : null;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.mariston.redis;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.context.support.FileSystemXmlApplicationContext;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测工具, redis-benchmark 的 java 版本, 压测的是 {@link RedisClient} 的调用链路
+ * <pre>
+ * java -cp ... com.mariston.redis.RedisBenchmark [options]
+ *   -h host              standalone host, default 127.0.0.1
+ *   -p port              standalone port, default 6379
+ *   --sentinels h:p,...  sentinel nodes, used instead of -h/-p
+ *   --master name        sentinel master id, default mymaster
+ *   -a password          password
+ *   --config file        spring xml defining a RedisClient bean, used instead of the options above
+ *   --db index           database, default 15
+ *   -c clients           concurrent callers, default 50
+ *   -n requests          total requests, default 100000
+ *   -d seconds           run for a duration instead of -n
+ *   -k keyspace          number of distinct keys per operation, default 100000
+ *   -s size              value size distribution: fixed:N, uniform:MIN-MAX or exp:MEAN, default fixed:100
+ *   -m mix               weighted operations, default get:50,put:50, available:
+ *                        get,put,putex,getObject,putObject,getMap,putMap,putFile
+ *   -r rate              target requests per second (open loop), 0 for closed loop, default 0
+ *   --pool size          connection pool size, default clients
+ *   --preload yes|no     write every key read by the mix before the run, default yes
+ * </pre>
+ * with a target rate every request has an intended start time on a fixed schedule and its latency is measured
+ * from that time, so a stalled server is charged for the requests queued behind it (coordinated omission).
+ * Keys and payloads are built before the timed region, so the latency covers the call to {@link RedisClient}
+ * only. The writes of {@link RedisClient} do not wait for the reply, so the latency of put, putex, putObject,
+ * putMap and putFile is the time to submit the command, not a round trip; they are marked with {@code *} in the
+ * report, and so is {@code all} when the mix has writes. The preload makes the reads of the mix measure hits
+ * rather than misses.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class RedisBenchmark {
+
+    /**
+     * 压测操作
+     */
+    enum Operation {
+        GET(false), PUT(true), PUTEX(true), GETOBJECT(false), PUTOBJECT(true), GETMAP(false), PUTMAP(true), PUTFILE(true);
+
+        /**
+         * 写操作不等待应答, 延迟只是提交命令的耗时
+         */
+        final boolean submitOnly;
+
+        Operation(boolean submitOnly) {
+            this.submitOnly = submitOnly;
+        }
+    }
+
+    private final RedisClient redisClient;
+
+    private final Map<String, String> options;
+
+    private final int db;
+
+    private final int clients;
+
+    private final long requests;
+
+    private final long durationNanos;
+
+    private final int keyspace;
+
+    private final String sizeDistribution;
+
+    private final Sizes sizes;
+
+    private final double rate;
+
+    private final Operation[] schedule;
+
+    /**
+     * putFile 用到的文件, 按值大小分布预先生成
+     */
+    private final File[] files;
+
+    private final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+
+    private final LatencyHistogram all = new LatencyHistogram();
+
+    private final AtomicLong issued = new AtomicLong();
+
+    RedisBenchmark(RedisClient redisClient, Map<String, String> options) throws Exception {
+        this.redisClient = redisClient;
+        this.options = options;
+        this.db = Integer.parseInt(option("db", "15"));
+        this.clients = Integer.parseInt(option("c", "50"));
+        this.requests = Long.parseLong(option("n", "100000"));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("d", "0")));
+        this.keyspace = Integer.parseInt(option("k", "100000"));
+        this.sizeDistribution = option("s", "fixed:100");
+        this.sizes = Sizes.parse(sizeDistribution);
+        this.rate = Double.parseDouble(option("r", "0"));
+        this.schedule = schedule(option("m", "get:50,put:50"));
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new LatencyHistogram());
+        }
+        this.files = Arrays.asList(schedule).contains(Operation.PUTFILE) ? files(16) : new File[0];
+    }
+
+    /**
+     * run the benchmark and print the report
+     */
+    void run() throws InterruptedException {
+        System.out.printf("clients=%d, requests=%s, keyspace=%d, size=%s, rate=%s, db=%d%n", clients,
+                durationNanos > 0 ? TimeUnit.NANOSECONDS.toSeconds(durationNanos) + "s" : String.valueOf(requests),
+                keyspace, sizeDistribution, rate > 0 ? rate + "/s" : "closed loop", db);
+        if (!"no".equalsIgnoreCase(option("preload", "yes"))) {
+            preload();
+        }
+        final long start = System.nanoTime();
+        final long intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        final CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    loop(start, intervalNanos);
+                } finally {
+                    done.countDown();
+                }
+            }, "redis-benchmark-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        while (!done.await(1, TimeUnit.SECONDS)) {
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("  %.0fs: %d requests, %.0f req/s, p99 %dus%n", elapsed, all.getCount(), all.getCount() / elapsed, all.getPercentile(99));
+        }
+        report((System.nanoTime() - start) / 1e9);
+    }
+
+    private void loop(long start, long intervalNanos) {
+        while (true) {
+            long n = issued.getAndIncrement();
+            if (durationNanos > 0 ? System.nanoTime() - start >= durationNanos : n >= requests) {
+                return;
+            }
+            Operation operation = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+            Runnable request = prepare(operation);
+            long begin = System.nanoTime();
+            if (intervalNanos > 0) {
+                long intended = start + n * intervalNanos;
+                if (durationNanos > 0 && intended - start >= durationNanos) {
+                    return;
+                }
+                while (intended > (begin = System.nanoTime())) {
+                    LockSupport.parkNanos(intended - begin);
+                }
+                // latency is charged from the intended start, not the actual one
+                begin = intended;
+            }
+            request.run();
+            long micros = (System.nanoTime() - begin) / 1000;
+            histograms.get(operation).record(micros);
+            all.record(micros);
+        }
+    }
+
+    /**
+     * build the key and the payload of a request outside of the timed region
+     */
+    private Runnable prepare(Operation operation) {
+        int key = ThreadLocalRandom.current().nextInt(keyspace);
+        switch (operation) {
+            case GET: {
+                String name = "bench:str:" + key;
+                return () -> redisClient.get(name, db);
+            }
+            case PUT: {
+                String name = "bench:str:" + key;
+                String value = value(nextSize());
+                return () -> redisClient.put(name, value, db);
+            }
+            case PUTEX: {
+                String name = "bench:str:" + key;
+                String value = value(nextSize());
+                return () -> redisClient.put(name, 600, value, db);
+            }
+            case GETOBJECT: {
+                String name = "bench:obj:" + key;
+                return () -> redisClient.getObject(name, db, Heart.class);
+            }
+            case PUTOBJECT: {
+                String name = "bench:obj:" + key;
+                Heart heart = heart(nextSize());
+                return () -> redisClient.putObject(name, heart, db);
+            }
+            case GETMAP: {
+                String name = "bench:map:" + key;
+                return () -> redisClient.getMap(name, db);
+            }
+            case PUTMAP: {
+                String name = "bench:map:" + key;
+                Map<String, String> map = map(nextSize());
+                return () -> redisClient.putMap(name, map, db);
+            }
+            case PUTFILE: {
+                String name = "bench:file:" + key;
+                File file = files[ThreadLocalRandom.current().nextInt(files.length)];
+                return () -> redisClient.putFile(name, file, db);
+            }
+            default:
+                throw new IllegalStateException(operation.name());
+        }
+    }
+
+    /**
+     * write every key read by the mix, pipelined in batches of 1000 by {@code clients} threads
+     */
+    private void preload() throws InterruptedException {
+        final Set<Operation> reads = EnumSet.noneOf(Operation.class);
+        for (Operation operation : schedule) {
+            if (operation == Operation.GET || operation == Operation.GETOBJECT || operation == Operation.GETMAP) {
+                reads.add(operation);
+            }
+        }
+        if (reads.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        final AtomicLong next = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    long from;
+                    while ((from = next.getAndAdd(1000)) < keyspace) {
+                        RedisBatch batch = redisClient.batch(db).atomic(false);
+                        for (long key = from; key < Math.min(keyspace, from + 1000); key++) {
+                            if (reads.contains(Operation.GET)) {
+                                batch.put("bench:str:" + key, value(nextSize()));
+                            }
+                            if (reads.contains(Operation.GETOBJECT)) {
+                                batch.putObject("bench:obj:" + key, heart(nextSize()));
+                            }
+                            if (reads.contains(Operation.GETMAP)) {
+                                batch.putMap("bench:map:" + key, map(nextSize()));
+                            }
+                        }
+                        if (!batch.execute().isSuccess()) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }, "redis-benchmark-preload-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        System.out.printf("preloaded %d keys per read operation in %.2fs%s%n", keyspace, (System.nanoTime() - start) / 1e9,
+                failed.get() == 0 ? "" : ", " + failed.get() + " batches failed");
+    }
+
+    private void report(double seconds) {
+        System.out.printf("%n%d requests in %.2fs, %.1f req/s%n", all.getCount(), seconds, all.getCount() / seconds);
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s%n", "op(us)", "count", "mean", "p50", "p90", "p99", "p99.9", "max");
+        boolean submitOnly = false;
+        for (Map.Entry<Operation, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                submitOnly |= entry.getKey().submitOnly;
+                print(label(entry.getKey()), entry.getValue());
+            }
+        }
+        print(submitOnly ? "all*" : "all", all);
+        if (submitOnly) {
+            System.out.println("* submit time: writes do not wait for the reply of redis");
+        }
+    }
+
+    /**
+     * @return the name of an operation in the report, {@code *} marks submit time
+     */
+    static String label(Operation operation) {
+        return operation.name().toLowerCase() + (operation.submitOnly ? "*" : "");
+    }
+
+    private void print(String name, LatencyHistogram histogram) {
+        System.out.printf("%-10s %10d %10.0f %10d %10d %10d %10d %10d%n", name, histogram.getCount(), histogram.getMean(),
+                histogram.getPercentile(50), histogram.getPercentile(90), histogram.getPercentile(99),
+                histogram.getPercentile(99.9), histogram.getMax());
+    }
+
+    /**
+     * @return a value size drawn from the distribution
+     */
+    int nextSize() {
+        return sizes.next(ThreadLocalRandom.current());
+    }
+
+    private static String value(int size) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    private static Heart heart(int size) {
+        Heart heart = new Heart();
+        heart.setChannel(1);
+        heart.setSampleRate(250);
+        heart.setLeadEvent((short) 12);
+        heart.setMonitoredTime((int) (System.currentTimeMillis() / 1000));
+        byte[] data = new byte[size];
+        ThreadLocalRandom.current().nextBytes(data);
+        heart.setData(data);
+        return heart;
+    }
+
+    private static Map<String, String> map(int size) {
+        Map<String, String> map = new HashMap<>();
+        int fields = Math.max(1, size / 64);
+        for (int i = 0; i < fields; i++) {
+            map.put("f" + i, value(Math.min(64, size)));
+        }
+        return map;
+    }
+
+    private File[] files(int count) throws Exception {
+        File[] result = new File[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = File.createTempFile("redis-benchmark", ".bin");
+            result[i].deleteOnExit();
+            byte[] data = new byte[nextSize()];
+            ThreadLocalRandom.current().nextBytes(data);
+            FileUtils.writeByteArrayToFile(result[i], data);
+        }
+        return result;
+    }
+
+    /**
+     * expand {@code get:50,put:50} into a 100 slot weighted schedule
+     */
+    static Operation[] schedule(String mix) {
+        List<Operation> slots = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] weighted = part.trim().split(":");
+            Operation operation = Operation.valueOf(weighted[0].trim().toUpperCase());
+            int weight = weighted.length > 1 ? Integer.parseInt(weighted[1].trim()) : 1;
+            for (int i = 0; i < weight; i++) {
+                slots.add(operation);
+            }
+        }
+        if (slots.isEmpty()) {
+            throw new IllegalArgumentException("empty operation mix: " + mix);
+        }
+        return slots.toArray(new Operation[slots.size()]);
+    }
+
+    /**
+     * 值大小分布, 启动时解析一次
+     */
+    static final class Sizes {
+
+        private final String kind;
+
+        private final int min;
+
+        private final int max;
+
+        private final double mean;
+
+        private Sizes(String kind, int min, int max, double mean) {
+            this.kind = kind;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+        }
+
+        /**
+         * @param distribution fixed:N, uniform:MIN-MAX or exp:MEAN
+         * @return {@link Sizes}
+         */
+        static Sizes parse(String distribution) {
+            String[] parts = distribution.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("unknown size distribution: " + distribution);
+            }
+            switch (parts[0]) {
+                case "fixed":
+                    int size = Integer.parseInt(parts[1].trim());
+                    return new Sizes(parts[0], size, size, size);
+                case "uniform":
+                    String[] range = parts[1].split("-");
+                    int min = Integer.parseInt(range[0].trim());
+                    int max = Integer.parseInt(range[1].trim());
+                    if (min > max) {
+                        throw new IllegalArgumentException("empty size range: " + distribution);
+                    }
+                    return new Sizes(parts[0], min, max, (min + max) / 2.0);
+                case "exp":
+                    return new Sizes(parts[0], 1, Integer.MAX_VALUE, Double.parseDouble(parts[1].trim()));
+                default:
+                    throw new IllegalArgumentException("unknown size distribution: " + distribution);
+            }
+        }
+
+        int next(Random random) {
+            switch (kind) {
+                case "uniform":
+                    return min + random.nextInt(max - min + 1);
+                case "exp":
+                    return (int) Math.max(1, -Math.log(1 - random.nextDouble()) * mean);
+                default:
+                    return min;
+            }
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return StringUtils.isEmpty(value) ? defaultValue : value;
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("-") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("unexpected argument: " + args[i]);
+            }
+            options.put(args[i].replaceFirst("^--?", ""), args[++i]);
+        }
+        return options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: see the javadoc of " + RedisBenchmark.class.getName());
+            System.exit(1);
+            return;
+        }
+        AbstractApplicationContext context = null;
+        DefaultLettucePool pool = null;
+        RedisClient redisClient;
+        if (options.containsKey("config")) {
+            context = new FileSystemXmlApplicationContext(options.get("config"));
+            redisClient = context.getBean(RedisClient.class);
+        } else {
+            GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+            int size = Integer.parseInt(options.containsKey("pool") ? options.get("pool") : options.containsKey("c") ? options.get("c") : "50");
+            poolConfig.setMaxTotal(size);
+            poolConfig.setMaxIdle(size);
+            if (options.containsKey("sentinels")) {
+                RedisSentinelConfiguration sentinel = new RedisSentinelConfiguration();
+                sentinel.master(options.containsKey("master") ? options.get("master") : "mymaster");
+                for (String node : options.get("sentinels").split(",")) {
+                    String[] hostPort = node.trim().split(":");
+                    sentinel.sentinel(new RedisNode(hostPort[0], Integer.parseInt(hostPort[1])));
+                }
+                pool = new DefaultLettucePool(sentinel);
+            } else {
+                pool = new DefaultLettucePool(options.containsKey("h") ? options.get("h") : "127.0.0.1",
+                        Integer.parseInt(options.containsKey("p") ? options.get("p") : "6379"));
+            }
+            pool.setPoolConfig(poolConfig);
+            if (options.containsKey("a")) {
+                pool.setPassword(options.get("a"));
+            }
+            pool.afterPropertiesSet();
+            redisClient = new RedisClient();
+            redisClient.setDefaultLettucePool(pool);
+            redisClient.afterPropertiesSet();
+        }
+        try {
+            new RedisBenchmark(redisClient, options).run();
+        } finally {
+            if (context != null) {
+                context.close();
+            } else if (pool != null) {
+                pool.destroy();
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.mariston.redis;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
 import com.lambdaworks.redis.RedisAsyncConnection;
 import com.lambdaworks.redis.RedisFuture;
 import org.apache.commons.io.FileUtils;
@@ -15,9 +16,17 @@ import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 
 import java.io.File;
+import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
 
 /**
  * redis client
@@ -53,6 +62,41 @@ public final class RedisClient implements InitializingBean, DisposableBean {
      */
     private final String DEFAULT_CHARSET = "UTF-8";
 
+    /**
+     * 连接池自适应调节器, 可为空
+     */
+    private AdaptivePoolSizer poolSizer;
+
+    /**
+     * 热点键/大键检测, 可为空
+     */
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 超时策略, 可为空
+     */
+    private TtlPolicy ttlPolicy;
+
+    /**
+     * 批量读取时达到该键数则并行解析 json
+     */
+    private int parallelParseThreshold = 256;
+
+    /**
+     * 键过滤器, 可为空
+     */
+    private KeyFilter keyFilter;
+
+    /**
+     * 本地写入缓冲, 可为空
+     */
+    private WriteSpool writeSpool;
+
+    /**
+     * 每个借出连接的借出时间点(纳秒), 用于统计连接占用时长; 按连接实例区分, 同一线程可同时持有多个连接
+     */
+    private final Map<RedisAsyncConnection<byte[], byte[]>, Long> borrowedAt = Collections.synchronizedMap(new IdentityHashMap<>());
+
     /**
      * 永久保存键值对
      *
@@ -74,14 +118,22 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.hasText(key, "key is empty");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[] data = null;
         try {
+            data = value.getBytes(Charset.forName(DEFAULT_CHARSET));
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.SET, index, key, 0, data) != null) {
+                return;
+            }
             connection = getConn(index);
-            connection.set(key.getBytes(Charset.forName(DEFAULT_CHARSET)), value.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), connection.set(key.getBytes(Charset.forName(DEFAULT_CHARSET)), data));
+            track(index, key, data.length, true);
         } catch (Exception e) {
             logger.error("===永久保存键值对异常：{}", e.getMessage());
+            spool(WriteSpool.Op.SET, index, key, 0, data);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -109,14 +161,24 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.hasText(key, "key is empty");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[] data = null;
+        long expiry = seconds;
         try {
+            data = value.getBytes(Charset.forName(DEFAULT_CHARSET));
+            expiry = jitter(seconds);
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.SET, index, key, expiry, data) != null) {
+                return;
+            }
             connection = getConn(index);
-            connection.setex(key.getBytes(Charset.forName(DEFAULT_CHARSET)), seconds, value.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), scheduled(expiry, connection.setex(key.getBytes(Charset.forName(DEFAULT_CHARSET)), expiry, data)));
+            track(index, key, data.length, true);
         } catch (Exception e) {
             logger.error("====限时保存键值对异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.SET, index, key, expiry, data);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -134,14 +196,22 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.notNull(value, "value is null ");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[] data = null;
         try {
+            data = ByteUtils.objectToByteArray(value);
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.SET, index, key, 0, data) != null) {
+                return;
+            }
             connection = getConn(index);
-            connection.set(key.getBytes(Charset.forName(DEFAULT_CHARSET)), ByteUtils.objectToByteArray(value));
+            landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), connection.set(key.getBytes(Charset.forName(DEFAULT_CHARSET)), data));
+            track(index, key, data.length, true);
         } catch (Exception e) {
             logger.error("====限时保存键值对异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.SET, index, key, 0, data);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -159,19 +229,79 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.notNull(value, "value is null ");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[] data = null;
+        long expiry = seconds;
         try {
+            data = ByteUtils.objectToByteArray(value);
+            expiry = jitter(seconds);
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.SET, index, key, expiry, data) != null) {
+                return;
+            }
             connection = getConn(index);
-            connection.setex(key.getBytes(Charset.forName(DEFAULT_CHARSET)), seconds, ByteUtils.objectToByteArray(value));
+            landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), scheduled(expiry, connection.setex(key.getBytes(Charset.forName(DEFAULT_CHARSET)), expiry, data)));
+            track(index, key, data.length, true);
         } catch (Exception e) {
             logger.error("====限时保存键值对异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.SET, index, key, expiry, data);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
 
 
+    /**
+     * 永久保存对象, 值为 json
+     *
+     * @param key   键
+     * @param value 值
+     * @param index 数据库
+     */
+    public void putJson(String key, Object value, int index) {
+        putJson(key, value, 0, index);
+    }
+
+    /**
+     * 限时保存对象, 值为 json; 时长不大于 0 表示永久保存
+     *
+     * @param key     键
+     * @param value   值
+     * @param seconds 时长
+     * @param index   数据库
+     */
+    public void putJson(String key, Object value, long seconds, int index) {
+        Assert.hasText(key, "key is empty");
+        Assert.notNull(value, "value is null ");
+        Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[] data = null;
+        long expiry = 0;
+        try {
+            data = JSON.toJSONBytes(value);
+            expiry = seconds > 0 ? jitter(seconds) : 0;
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.SET, index, key, expiry, data) != null) {
+                return;
+            }
+            connection = getConn(index);
+            if (expiry > 0) {
+                landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), scheduled(expiry, connection.setex(key.getBytes(Charset.forName(DEFAULT_CHARSET)), expiry, data)));
+            } else {
+                landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), connection.set(key.getBytes(Charset.forName(DEFAULT_CHARSET)), data));
+            }
+            track(index, key, data.length, true);
+        } catch (Exception e) {
+            logger.error("====保存json异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.SET, index, key, expiry, data);
+        } finally {
+            if (connection != null) {
+                returnConn(connection);
+            }
+        }
+    }
+
     /**
      * 永久保存键值map
      *
@@ -183,18 +313,34 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.hasText(key, "key is empty");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[][] fields = null;
         try {
             Map<byte[], byte[]> value = new HashMap<>();
+            byte[][] pairs = new byte[map.size() * 2][];
+            int i = 0;
+            long size = 0;
             for (Map.Entry<String, String> entry : map.entrySet()) {
-                value.put(entry.getKey().getBytes(Charset.forName(DEFAULT_CHARSET)), entry.getValue().getBytes(Charset.forName(DEFAULT_CHARSET)));
+                byte[] field = entry.getKey().getBytes(Charset.forName(DEFAULT_CHARSET));
+                byte[] data = entry.getValue().getBytes(Charset.forName(DEFAULT_CHARSET));
+                value.put(field, data);
+                pairs[i++] = field;
+                pairs[i++] = data;
+                size += field.length + data.length;
+            }
+            fields = pairs;
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.HMSET, index, key, 0, fields) != null) {
+                return;
             }
             connection = getConn(index);
-            connection.hmset(key.getBytes(Charset.forName(DEFAULT_CHARSET)), value);
+            landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), connection.hmset(key.getBytes(Charset.forName(DEFAULT_CHARSET)), value));
+            track(index, key, size, true);
         } catch (Exception e) {
             logger.error("====永久保存键值map异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.HMSET, index, key, 0, fields);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -211,14 +357,22 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.notNull(file, "file is null");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[] data = null;
         try {
+            data = FileUtils.readFileToByteArray(file);
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.SET, index, key, 0, data) != null) {
+                return;
+            }
             connection = getConn(index);
-            connection.set(key.getBytes(Charset.forName(DEFAULT_CHARSET)), FileUtils.readFileToByteArray(file));
+            landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), connection.set(key.getBytes(Charset.forName(DEFAULT_CHARSET)), data));
+            track(index, key, data.length, true);
         } catch (Exception e) {
             logger.error("====永久保存file异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.SET, index, key, 0, data);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -236,14 +390,24 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.notNull(file, "file is null");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[] data = null;
+        long expiry = seconds;
         try {
+            data = FileUtils.readFileToByteArray(file);
+            expiry = jitter(seconds);
+            written(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            if (defer(WriteSpool.Op.SET, index, key, expiry, data) != null) {
+                return;
+            }
             connection = getConn(index);
-            connection.setex(key.getBytes(Charset.forName(DEFAULT_CHARSET)), seconds, FileUtils.readFileToByteArray(file));
+            landed(index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), scheduled(expiry, connection.setex(key.getBytes(Charset.forName(DEFAULT_CHARSET)), expiry, data)));
+            track(index, key, data.length, true);
         } catch (Exception e) {
             logger.error("====保存file异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.SET, index, key, expiry, data);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -294,21 +458,63 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.hasText(key, "key is empty");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         String value = StringUtils.EMPTY;
+        if (absent(index, key)) {
+            return value;
+        }
         RedisAsyncConnection<byte[], byte[]> connection = null;
         try {
             connection = getConn(index);
             RedisFuture<byte[]> bytes = connection.get(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
-            value = new String(bytes.get(), Charset.forName(DEFAULT_CHARSET));
+            byte[] data = bytes.get();
+            track(index, key, data == null ? 0 : data.length, false);
+            if (data != null) {
+                value = new String(data, Charset.forName(DEFAULT_CHARSET));
+            } else {
+                missed(index);
+            }
         } catch (Exception e) {
             logger.error("===从缓存中获取值异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
         return value;
     }
 
+    /**
+     * 获取值, 键不存在时返回 {@link Optional#empty()}
+     *
+     * @param key   键
+     * @param index 数据库 索引
+     * @return {@link Optional}
+     */
+    public Optional<String> find(String key, int index) {
+        Assert.hasText(key, "key is empty");
+        Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
+        if (absent(index, key)) {
+            return Optional.empty();
+        }
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getConn(index);
+            RedisFuture<byte[]> bytes = connection.get(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            byte[] data = bytes.get();
+            track(index, key, data == null ? 0 : data.length, false);
+            if (data != null) {
+                return Optional.of(new String(data, Charset.forName(DEFAULT_CHARSET)));
+            }
+            missed(index);
+        } catch (Exception e) {
+            logger.error("===从缓存中获取值异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                returnConn(connection);
+            }
+        }
+        return Optional.empty();
+    }
+
     /**
      * 获取值
      *
@@ -320,11 +526,20 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.hasText(key, "key is empty");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         Assert.notNull(clazz, "the class of object is null");
+        if (absent(index, key)) {
+            return null;
+        }
         RedisAsyncConnection<byte[], byte[]> connection = null;
         try {
             connection = getConn(index);
             RedisFuture<byte[]> bytes = connection.get(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
-            String value = new String(bytes.get(), Charset.forName(DEFAULT_CHARSET));
+            byte[] data = bytes.get();
+            track(index, key, data == null ? 0 : data.length, false);
+            if (data == null) {
+                missed(index);
+                return null;
+            }
+            String value = new String(data, Charset.forName(DEFAULT_CHARSET));
             if (StringUtils.isNotBlank(value)) {
                 return JSON.parseObject(value, clazz);
             }
@@ -332,12 +547,131 @@ public final class RedisClient implements InitializingBean, DisposableBean {
             logger.error("===从缓存中获取值异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
         return null;
     }
 
+    /**
+     * 获取 json 对象, 直接从字节解析
+     *
+     * @param key   键
+     * @param index 数据库 索引
+     * @param clazz 类型
+     * @return 对象, 键不存在时为 null
+     */
+    public <T> T getJson(String key, int index, Class<T> clazz) {
+        Assert.notNull(clazz, "the class of object is null");
+        return getJson(key, index, (Type) clazz);
+    }
+
+    /**
+     * 获取 json 对象, 用于泛型类型, 如 {@code new TypeReference<List<Heart>>() {}}
+     *
+     * @param key   键
+     * @param index 数据库 索引
+     * @param type  类型
+     * @return 对象, 键不存在时为 null
+     */
+    public <T> T getJson(String key, int index, TypeReference<T> type) {
+        Assert.notNull(type, "the type of object is null");
+        return getJson(key, index, type.getType());
+    }
+
+    private <T> T getJson(String key, int index, Type type) {
+        Assert.hasText(key, "key is empty");
+        Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
+        if (absent(index, key)) {
+            return null;
+        }
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            connection = getConn(index);
+            RedisFuture<byte[]> bytes = connection.get(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            byte[] data = bytes.get();
+            track(index, key, data == null ? 0 : data.length, false);
+            if (data == null) {
+                missed(index);
+                return null;
+            }
+            return JSON.parseObject(data, type);
+        } catch (Exception e) {
+            logger.error("===获取json异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                returnConn(connection);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 批量获取 json 对象, 一次 MGET; 键数达到 {@code parallelParseThreshold} 时并行解析
+     *
+     * @param keys  键
+     * @param index 数据库 索引
+     * @param clazz 类型
+     * @return 与键一一对应的对象, 键不存在时为 null
+     */
+    public <T> List<T> getJsonAll(List<String> keys, int index, Class<T> clazz) {
+        Assert.notEmpty(keys, "keys is null or the size is zero");
+        Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
+        Assert.notNull(clazz, "the class of object is null");
+        List<T> values = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            values.add(null);
+        }
+        List<Integer> positions = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (!absent(index, keys.get(i))) {
+                positions.add(i);
+            }
+        }
+        if (positions.isEmpty()) {
+            return values;
+        }
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            byte[][] names = new byte[positions.size()][];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = keys.get(positions.get(i)).getBytes(Charset.forName(DEFAULT_CHARSET));
+            }
+            connection = getConn(index);
+            List<byte[]> replies = connection.mget(names).get();
+            for (int i = 0; i < names.length; i++) {
+                byte[] data = replies.get(i);
+                track(index, keys.get(positions.get(i)), data == null ? 0 : data.length, false);
+                if (data == null) {
+                    missed(index);
+                }
+            }
+            IntStream range = IntStream.range(0, names.length);
+            if (names.length >= parallelParseThreshold) {
+                range = range.parallel();
+            }
+            range.forEach(i -> {
+                byte[] data = replies.get(i);
+                if (data == null) {
+                    return;
+                }
+                // one malformed value must not lose the others
+                try {
+                    values.set(positions.get(i), JSON.parseObject(data, clazz));
+                } catch (Exception e) {
+                    logger.error("===批量获取json解析异常, 键:{}, {}", keys.get(positions.get(i)), e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            logger.error("===批量获取json异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                returnConn(connection);
+            }
+        }
+        return values;
+    }
+
     /**
      * 获取值
      *
@@ -349,11 +683,20 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.hasText(key, "key is empty");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         Assert.notNull(clazz, "the class of object is null");
+        if (absent(index, key)) {
+            return null;
+        }
         RedisAsyncConnection<byte[], byte[]> connection = null;
         try {
             connection = getConn(index);
             RedisFuture<byte[]> bytes = connection.get(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
-            Object obj = ByteUtils.byteArrayToObject(bytes.get());
+            byte[] data = bytes.get();
+            track(index, key, data == null ? 0 : data.length, false);
+            if (data == null) {
+                missed(index);
+                return null;
+            }
+            Object obj = ByteUtils.byteArrayToObject(data);
             if (obj != null && clazz.equals(obj.getClass())) {
                 return clazz.cast(obj);
             }
@@ -361,7 +704,7 @@ public final class RedisClient implements InitializingBean, DisposableBean {
             logger.error("===从缓存中获取值异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
         return null;
@@ -379,22 +722,32 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
         Map<String, String> map = new HashMap<>();
+        if (absent(index, key)) {
+            return map;
+        }
         try {
             connection = getConn(index);
             RedisFuture<Map<byte[], byte[]>> bytes = connection.hgetall(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
             Map<byte[], byte[]> bm = bytes.get();
             if (!ObjectUtils.isEmpty(bm)) {
+                long size = 0;
+                for (Map.Entry<byte[], byte[]> entry : bm.entrySet()) {
+                    size += entry.getKey().length + entry.getValue().length;
+                }
+                track(index, key, size, false);
                 for (Map.Entry<byte[], byte[]> entry : bm.entrySet()) {
                     String cKey = new String(entry.getKey(), Charset.forName(DEFAULT_CHARSET));
                     String cValue = new String(entry.getValue(), Charset.forName(DEFAULT_CHARSET));
                     map.put(cKey, cValue);
                 }
+            } else {
+                missed(index);
             }
         } catch (Exception e) {
             logger.error("===获取键值map异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
         return map;
@@ -413,15 +766,22 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.hasText(field, "field is null or empty");
         RedisAsyncConnection<byte[], byte[]> connection = null;
         String value = StringUtils.EMPTY;
+        if (absent(index, key)) {
+            return value;
+        }
         try {
             connection = getConn(index);
             RedisFuture<byte[]> bytes = connection.hget(key.getBytes(Charset.forName(DEFAULT_CHARSET)), field.getBytes(Charset.forName(DEFAULT_CHARSET)));
-            value = new String(bytes.get(), Charset.forName(DEFAULT_CHARSET));
+            byte[] data = bytes.get();
+            track(index, key, data == null ? 0 : data.length, false);
+            if (data != null) {
+                value = new String(data, Charset.forName(DEFAULT_CHARSET));
+            }
         } catch (Exception e) {
             logger.error("===获取键值map中field异常[{}]{}", e.getStackTrace()[0], e.getMessage());
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
         return value;
@@ -444,13 +804,15 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         try {
             connection = getConn(index);
             RedisFuture<byte[]> bytes = connection.get(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
+            byte[] data = bytes.get();
+            track(index, key, data == null ? 0 : data.length, false);
             file = new File(filePath);
-            FileUtils.writeByteArrayToFile(file, bytes.get());
+            FileUtils.writeByteArrayToFile(file, data);
         } catch (Exception e) {
             logger.error("===获取file异常[{}]{}", e.getStackTrace()[0], e.getMessage());
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
         return file;
@@ -476,13 +838,17 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
         try {
+            if (defer(WriteSpool.Op.DEL, index, key, 0) != null) {
+                return;
+            }
             connection = getConn(index);
             connection.del(key.getBytes(Charset.forName(DEFAULT_CHARSET)));
         } catch (Exception e) {
             logger.error("===删除键值对异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.DEL, index, key, 0);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -498,24 +864,28 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         Assert.notEmpty(fields, "fields is null or the size is zero");
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        byte[][] bytes = new byte[0][];
         try {
-            connection = getConn(index);
-            byte[][] bytes = new byte[0][];
             for (String field : fields) {
                 bytes = ArrayUtils.add(bytes, field.getBytes(Charset.forName(DEFAULT_CHARSET)));
             }
+            if (defer(WriteSpool.Op.HDEL, index, key, 0, bytes) != null) {
+                return;
+            }
+            connection = getConn(index);
             connection.hdel(key.getBytes(Charset.forName(DEFAULT_CHARSET)), bytes);
         } catch (Exception e) {
             logger.error("===删除键值map中的field异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            spool(WriteSpool.Op.HDEL, index, key, 0, bytes);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
 
     /**
-     * 清空数据库
+     * 清空数据库, 本地缓冲有待回放的写入时同样进入缓冲, 在这些写入之后执行
      *
      * @param index 数据库
      */
@@ -523,13 +893,19 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
         try {
+            if (keyFilter != null) {
+                keyFilter.invalidate(index);
+            }
+            if (defer(WriteSpool.Op.FLUSHDB, index, "", 0) != null) {
+                return;
+            }
             connection = getConn(index);
             connection.flushdb();
         } catch (Exception e) {
             logger.error("===清空数据库异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
     }
@@ -551,24 +927,109 @@ public final class RedisClient implements InitializingBean, DisposableBean {
      * @param key     键
      * @param seconds 时长
      * @param index   索引
-     * @return boolean
+     * @return boolean, true 也表示已写入本地缓冲等待回放, 缓冲已满丢弃时为 false
      */
     public boolean expire(String key, long seconds, int index) {
         Assert.hasText(key, "key is empty");
         Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
         RedisAsyncConnection<byte[], byte[]> connection = null;
+        long expiry = seconds;
         try {
+            expiry = jitter(seconds);
+            Boolean deferred = defer(WriteSpool.Op.EXPIRE, index, key, expiry);
+            if (deferred != null) {
+                return deferred;
+            }
             connection = getConn(index);
-            RedisFuture<Boolean> bool = connection.expire(key.getBytes(Charset.forName(DEFAULT_CHARSET)), seconds);
-            return bool.get();
+            RedisFuture<Boolean> bool = connection.expire(key.getBytes(Charset.forName(DEFAULT_CHARSET)), expiry);
+            boolean set = Boolean.TRUE.equals(bool.get());
+            if (set) {
+                scheduled(expiry);
+            }
+            return set;
         } catch (Exception e) {
             logger.error("===设置超时时间异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+            return spool(WriteSpool.Op.EXPIRE, index, key, expiry);
         } finally {
             if (connection != null) {
-                defaultLettucePool.returnResource(connection);
+                returnConn(connection);
             }
         }
-        return false;
+    }
+
+    /**
+     * 批量设置超时时间, 在一个连接上流水线发送 EXPIRE
+     *
+     * @param keys    键
+     * @param seconds 时长
+     * @param index   索引
+     * @return 设置成功的键数
+     */
+    public long expireAll(Collection<String> keys, long seconds, int index) {
+        return expireAll(keys, seconds, index, true);
+    }
+
+    /**
+     * 批量设置超时时间
+     *
+     * @param keys    键
+     * @param seconds 时长
+     * @param index   索引
+     * @param adjust  是否按超时策略调整时长并计入过期分布, 滑动续期时为 false
+     * @return 设置成功的键数, 本地缓冲有待回放的写入时为写入缓冲的键数
+     */
+    long expireAll(Collection<String> keys, long seconds, int index, boolean adjust) {
+        Assert.notEmpty(keys, "keys is null or the size is zero");
+        Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        long count = 0;
+        try {
+            if (hasBacklog()) {
+                // behind the spooled writes of the same keys, like a single expire
+                for (String key : keys) {
+                    if (spool(WriteSpool.Op.EXPIRE, index, key, adjust ? jitter(seconds) : seconds)) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            connection = getConn(index);
+            List<RedisFuture<Boolean>> futures = new ArrayList<>(keys.size());
+            long[] expiries = new long[keys.size()];
+            int i = 0;
+            for (String key : keys) {
+                expiries[i] = adjust ? jitter(seconds) : seconds;
+                futures.add(connection.expire(key.getBytes(Charset.forName(DEFAULT_CHARSET)), expiries[i++]));
+            }
+            i = 0;
+            for (RedisFuture<Boolean> future : futures) {
+                if (Boolean.TRUE.equals(future.get())) {
+                    count++;
+                    if (adjust) {
+                        scheduled(expiries[i]);
+                    }
+                }
+                i++;
+            }
+        } catch (Exception e) {
+            logger.error("===批量设置超时时间异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        } finally {
+            if (connection != null) {
+                returnConn(connection);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 在一个连接上批量发送命令, 默认使用 MULTI/EXEC
+     *
+     * @param index 索引
+     * @return {@link RedisBatch}
+     */
+    public RedisBatch batch(int index) {
+        Assert.isTrue(index >= 0 && index < databases, "the index of database range must be between 0 and " + databases);
+        return new RedisBatch(this, index);
     }
 
     /**
@@ -606,12 +1067,212 @@ public final class RedisClient implements InitializingBean, DisposableBean {
      * @param index 数据库索引
      * @return {@link RedisAsyncConnection}
      */
-    private RedisAsyncConnection<byte[], byte[]> getConn(int index) {
+    RedisAsyncConnection<byte[], byte[]> getConn(int index) {
+        long start = System.nanoTime();
         RedisAsyncConnection<byte[], byte[]> connection = defaultLettucePool.getResource();
-        connection.select(index);
+        if (poolSizer != null) {
+            long now = System.nanoTime();
+            poolSizer.onBorrow(now - start);
+            borrowedAt.put(connection, now);
+        }
+        boolean selected = false;
+        try {
+            connection.select(index);
+            selected = true;
+        } finally {
+            if (!selected) {
+                returnConn(connection);
+            }
+        }
         return connection;
     }
 
+    /**
+     * 记录键的访问, 读命中时按超时策略续期
+     *
+     * @param index 数据库索引
+     * @param key   键
+     * @param bytes 值的字节数
+     * @param write 是否写操作
+     */
+    private void track(int index, String key, long bytes, boolean write) {
+        if (hotKeyDetector != null) {
+            hotKeyDetector.record(index, key, bytes, write);
+        }
+        if (ttlPolicy != null && !write && bytes > 0) {
+            ttlPolicy.onRead(index, key);
+        }
+    }
+
+    /**
+     * 键过滤器确定键不存在
+     *
+     * @param index 数据库索引
+     * @param key   键
+     * @return 是否可以跳过查询
+     */
+    private boolean absent(int index, String key) {
+        return keyFilter != null && !keyFilter.mightContain(index, key);
+    }
+
+    /**
+     * 查询未命中, 统计键过滤器的误判
+     *
+     * @param index 数据库索引
+     */
+    private void missed(int index) {
+        if (keyFilter != null) {
+            keyFilter.onMiss(index);
+        }
+    }
+
+    /**
+     * 记录可能新建的键
+     *
+     * @param index 数据库索引
+     * @param key   键
+     */
+    void written(int index, byte[] key) {
+        if (keyFilter != null) {
+            keyFilter.add(index, key);
+        }
+    }
+
+    /**
+     * 写入确认后再次记录键, 期间开始的过滤器重建扫描不到尚未落地的写入
+     *
+     * @param index  数据库索引
+     * @param key    键
+     * @param future 写入命令
+     */
+    private void landed(int index, byte[] key, RedisFuture<?> future) {
+        if (keyFilter != null) {
+            future.addListener(() -> {
+                if (acknowledged(future)) {
+                    keyFilter.add(index, key);
+                }
+            }, Runnable::run);
+        }
+    }
+
+    /**
+     * 按超时策略调整时长, 不计入过期分布
+     *
+     * @param seconds 时长
+     * @return 调整后的时长
+     */
+    long jitter(long seconds) {
+        return ttlPolicy == null ? seconds : ttlPolicy.jitter(seconds);
+    }
+
+    /**
+     * 已写入的时长计入过期分布
+     *
+     * @param ttl 时长
+     */
+    void scheduled(long ttl) {
+        if (ttlPolicy != null) {
+            ttlPolicy.count(ttl);
+        }
+    }
+
+    /**
+     * 写入确认后时长计入过期分布, 写入失败或进入本地缓冲的时长不计入
+     *
+     * @param ttl    时长
+     * @param future 写入命令
+     * @return 写入命令
+     */
+    private <F extends RedisFuture<?>> F scheduled(long ttl, F future) {
+        if (ttlPolicy != null) {
+            future.addListener(() -> {
+                if (acknowledged(future)) {
+                    ttlPolicy.count(ttl);
+                }
+            }, Runnable::run);
+        }
+        return future;
+    }
+
+    /**
+     * 已完成的命令是否被 redis 确认: 没有错误应答, 也没有因连接断开等原因异常结束
+     *
+     * @param future 已完成的命令
+     * @return boolean
+     */
+    private static boolean acknowledged(RedisFuture<?> future) {
+        if (future.getError() != null) {
+            return false;
+        }
+        try {
+            future.get();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 本地缓冲中有待回放的写入时, 新的写入也进入缓冲, 保证同一个键的写入顺序; 缓冲已满时丢弃写入(由缓冲计数),
+     * 不直接发送, 否则会被稍后回放的旧写入覆盖
+     *
+     * @param op      操作
+     * @param index   数据库索引
+     * @param key     键
+     * @param seconds 时长
+     * @param args    参数
+     * @return null 表示没有待回放的写入, 应直接发送; true 已写入缓冲; false 缓冲已满, 写入被丢弃
+     */
+    private Boolean defer(WriteSpool.Op op, int index, String key, long seconds, byte[]... args) {
+        if (!hasBacklog()) {
+            return null;
+        }
+        return spool(op, index, key, seconds, args);
+    }
+
+    /**
+     * 本地缓冲中是否有待回放的写入; 不能进入缓冲的写入(批量、心电图流与索引、批量导入)此时拒绝执行,
+     * 否则它们会先于同一个键的旧写入到达, 随后被回放的旧写入覆盖
+     *
+     * @return boolean
+     */
+    boolean hasBacklog() {
+        return writeSpool != null && writeSpool.hasBacklog();
+    }
+
+    /**
+     * 写入失败时转入本地缓冲
+     *
+     * @param op      操作
+     * @param index   数据库索引
+     * @param key     键
+     * @param seconds 时长
+     * @param args    参数, 为空表示写入前已失败
+     * @return 是否已写入缓冲
+     */
+    private boolean spool(WriteSpool.Op op, int index, String key, long seconds, byte[]... args) {
+        if (writeSpool == null || args == null || ArrayUtils.contains(args, null)) {
+            return false;
+        }
+        return writeSpool.append(op, index, key.getBytes(Charset.forName(DEFAULT_CHARSET)), seconds, args);
+    }
+
+    /**
+     * 归还连接
+     *
+     * @param connection 连接
+     */
+    void returnConn(RedisAsyncConnection<byte[], byte[]> connection) {
+        try {
+            defaultLettucePool.returnResource(connection);
+        } finally {
+            Long at = borrowedAt.remove(connection);
+            if (poolSizer != null && at != null) {
+                poolSizer.onReturn(System.nanoTime() - at);
+            }
+        }
+    }
+
     /**
      * 设置连接池
      *
@@ -621,6 +1282,15 @@ public final class RedisClient implements InitializingBean, DisposableBean {
         this.defaultLettucePool = defaultLettucePool;
     }
 
+    /**
+     * get the sum of databases
+     *
+     * @return int
+     */
+    int getDatabases() {
+        return databases;
+    }
+
     /**
      * set the sum of databases
      *
@@ -629,4 +1299,67 @@ public final class RedisClient implements InitializingBean, DisposableBean {
     public void setDatabases(int databases) {
         this.databases = databases;
     }
+
+    /**
+     * set the adaptive sizer of the connection pool
+     *
+     * @param poolSizer {@link AdaptivePoolSizer}
+     */
+    public void setPoolSizer(AdaptivePoolSizer poolSizer) {
+        this.poolSizer = poolSizer;
+    }
+
+    /**
+     * set the detector of hot keys and big keys
+     *
+     * @param hotKeyDetector {@link HotKeyDetector}
+     */
+    public void setHotKeyDetector(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    /**
+     * set the policy of expiration
+     *
+     * @param ttlPolicy {@link TtlPolicy}
+     */
+    public void setTtlPolicy(TtlPolicy ttlPolicy) {
+        this.ttlPolicy = ttlPolicy;
+        if (ttlPolicy != null) {
+            ttlPolicy.attach(this);
+        }
+    }
+
+    /**
+     * set the spool that keeps writes while redis is unreachable
+     *
+     * @param writeSpool {@link WriteSpool}
+     */
+    public void setWriteSpool(WriteSpool writeSpool) {
+        this.writeSpool = writeSpool;
+        if (writeSpool != null) {
+            writeSpool.attach(this);
+        }
+    }
+
+    /**
+     * set the number of keys from which {@link #getJsonAll} parses in parallel
+     *
+     * @param parallelParseThreshold int
+     */
+    public void setParallelParseThreshold(int parallelParseThreshold) {
+        this.parallelParseThreshold = parallelParseThreshold;
+    }
+
+    /**
+     * set the filter that answers lookups of absent keys without a round trip
+     *
+     * @param keyFilter {@link KeyFilter}
+     */
+    public void setKeyFilter(KeyFilter keyFilter) {
+        this.keyFilter = keyFilter;
+        if (keyFilter != null) {
+            keyFilter.attach(this);
+        }
+    }
 }
@@ -0,0 +1,535 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.KeyScanCursor;
+import com.lambdaworks.redis.MapScanCursor;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.ScanArgs;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.springframework.util.Assert;
+
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * reactive streams 读取
+ * <p>
+ * every publisher fetches one page (a SCAN/HSCAN page, a GETRANGE chunk or an MGET batch) only when the
+ * subscriber has requested more elements than are buffered, so at most one page per subscription is held in
+ * memory however large the data set is. A page borrows a connection for one command and returns it right away.
+ * Pages are fetched on the thread that signals demand ({@link Subscription#request}) or, for {@link #getAll},
+ * on the thread that delivers the keys.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class RedisPublishers {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * redis client
+     */
+    private final RedisClient redisClient;
+
+    /**
+     * SCAN/HSCAN COUNT
+     */
+    private int scanCount = 1000;
+
+    /**
+     * 文件分块大小(字节)
+     */
+    private int chunkSize = 64 * 1024;
+
+    /**
+     * 每次 MGET 的键数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 命令超时(毫秒)
+     */
+    private long commandTimeoutMillis = 10000;
+
+    public RedisPublishers(RedisClient redisClient) {
+        Assert.notNull(redisClient, "redis client is null");
+        this.redisClient = redisClient;
+    }
+
+    /**
+     * keys matching a pattern, one SCAN page at a time
+     *
+     * @param pattern glob-style pattern, null for all keys
+     * @param index   the index of database
+     * @return {@link Publisher}
+     */
+    public Publisher<String> scanKeys(String pattern, int index) {
+        checkIndex(index);
+        return paged(() -> new Pager<String>() {
+
+            private KeyScanCursor<byte[]> cursor;
+
+            @Override
+            public List<String> next() throws Exception {
+                if (cursor != null && cursor.isFinished()) {
+                    return null;
+                }
+                RedisAsyncConnection<byte[], byte[]> connection = redisClient.getConn(index);
+                try {
+                    ScanArgs args = scanArgs(pattern);
+                    cursor = (cursor == null ? connection.scan(args) : connection.scan(cursor, args)).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                } finally {
+                    redisClient.returnConn(connection);
+                }
+                List<String> keys = new ArrayList<>(cursor.getKeys().size());
+                for (byte[] key : cursor.getKeys()) {
+                    keys.add(new String(key, UTF8));
+                }
+                return keys;
+            }
+        });
+    }
+
+    /**
+     * fields and values of a hash, one HSCAN page at a time
+     *
+     * @param key   key of the hash
+     * @param index the index of database
+     * @return {@link Publisher}
+     */
+    public Publisher<Map.Entry<String, String>> scanMap(String key, int index) {
+        Assert.hasText(key, "key is null or empty");
+        checkIndex(index);
+        return paged(() -> new Pager<Map.Entry<String, String>>() {
+
+            private MapScanCursor<byte[], byte[]> cursor;
+
+            @Override
+            public List<Map.Entry<String, String>> next() throws Exception {
+                if (cursor != null && cursor.isFinished()) {
+                    return null;
+                }
+                RedisAsyncConnection<byte[], byte[]> connection = redisClient.getConn(index);
+                try {
+                    byte[] name = key.getBytes(UTF8);
+                    ScanArgs args = scanArgs(null);
+                    cursor = (cursor == null ? connection.hscan(name, args) : connection.hscan(name, cursor, args)).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                } finally {
+                    redisClient.returnConn(connection);
+                }
+                List<Map.Entry<String, String>> entries = new ArrayList<>(cursor.getMap().size());
+                for (Map.Entry<byte[], byte[]> entry : cursor.getMap().entrySet()) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(new String(entry.getKey(), UTF8), new String(entry.getValue(), UTF8)));
+                }
+                return entries;
+            }
+        });
+    }
+
+    /**
+     * the value of a key (e.g. a file saved by {@link RedisClient#putFile}) in chunks of {@code chunkSize} bytes
+     *
+     * @param key   key
+     * @param index the index of database
+     * @return {@link Publisher}, empty if the key does not exist
+     */
+    public Publisher<byte[]> streamFile(String key, int index) {
+        Assert.hasText(key, "key is null or empty");
+        checkIndex(index);
+        return paged(() -> new Pager<byte[]>() {
+
+            private long offset;
+
+            private boolean finished;
+
+            @Override
+            public List<byte[]> next() throws Exception {
+                if (finished) {
+                    return null;
+                }
+                byte[] chunk;
+                RedisAsyncConnection<byte[], byte[]> connection = redisClient.getConn(index);
+                try {
+                    chunk = connection.getrange(key.getBytes(UTF8), offset, offset + chunkSize - 1).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                } finally {
+                    redisClient.returnConn(connection);
+                }
+                if (chunk == null || chunk.length < chunkSize) {
+                    finished = true;
+                }
+                if (chunk == null || chunk.length == 0) {
+                    return null;
+                }
+                offset += chunk.length;
+                return Collections.singletonList(chunk);
+            }
+        });
+    }
+
+    /**
+     * the values of the keys of a publisher, fetched with one MGET per {@code batchSize} keys; the value is null
+     * for a missing key
+     *
+     * @param keys  keys
+     * @param index the index of database
+     * @return {@link Publisher} of key and value, in the order of the keys
+     */
+    public Publisher<Map.Entry<String, String>> getAll(Publisher<String> keys, int index) {
+        Assert.notNull(keys, "keys is null");
+        checkIndex(index);
+        return batched(keys, batchSize, batch -> {
+            byte[][] names = new byte[batch.size()][];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = batch.get(i).getBytes(UTF8);
+            }
+            List<byte[]> values;
+            RedisAsyncConnection<byte[], byte[]> connection = redisClient.getConn(index);
+            try {
+                values = connection.mget(names).get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+            } finally {
+                redisClient.returnConn(connection);
+            }
+            List<Map.Entry<String, String>> entries = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                byte[] value = values.get(i);
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(batch.get(i), value == null ? null : new String(value, UTF8)));
+            }
+            return entries;
+        });
+    }
+
+    private ScanArgs scanArgs(String pattern) {
+        ScanArgs args = new ScanArgs().limit(scanCount);
+        if (pattern != null) {
+            args.match(pattern);
+        }
+        return args;
+    }
+
+    private void checkIndex(int index) {
+        Assert.isTrue(index >= 0 && index < redisClient.getDatabases(), "the index of database range must be between 0 and " + redisClient.getDatabases());
+    }
+
+    /**
+     * @param pagers creates the pager of each subscription
+     * @return a publisher that asks the pager for the next page when the subscriber needs more
+     */
+    static <T> Publisher<T> paged(PagerFactory<T> pagers) {
+        return subscriber -> {
+            Assert.notNull(subscriber, "subscriber is null");
+            subscriber.onSubscribe(new PagedSubscription<>(subscriber, pagers.create()));
+        };
+    }
+
+    /**
+     * @param upstream  source of keys
+     * @param batchSize keys per batch
+     * @param loader    loads the elements of one batch
+     * @return a publisher that requests {@code batchSize} keys from upstream when the subscriber needs more
+     */
+    static <T> Publisher<T> batched(Publisher<String> upstream, int batchSize, BatchLoader<T> loader) {
+        return subscriber -> {
+            Assert.notNull(subscriber, "subscriber is null");
+            BatchedSubscription<T> subscription = new BatchedSubscription<>(subscriber, batchSize, loader);
+            subscriber.onSubscribe(subscription);
+            upstream.subscribe(subscription);
+        };
+    }
+
+    public void setScanCount(int scanCount) {
+        Assert.isTrue(scanCount > 0, "scanCount must be positive");
+        this.scanCount = scanCount;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+        this.chunkSize = chunkSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    /**
+     * 分页读取
+     */
+    interface Pager<T> {
+
+        /**
+         * @return the next page, may be empty, null when there are no more pages
+         * @throws Exception if the page can not be read
+         */
+        List<T> next() throws Exception;
+    }
+
+    /**
+     * 每个订阅创建一个分页读取
+     */
+    interface PagerFactory<T> {
+
+        Pager<T> create();
+    }
+
+    /**
+     * 批量读取
+     */
+    interface BatchLoader<T> {
+
+        /**
+         * @param keys keys of one batch
+         * @return elements of the batch
+         * @throws Exception if the batch can not be read
+         */
+        List<T> load(List<String> keys) throws Exception;
+    }
+
+    /**
+     * 按需发送: elements are buffered in {@code queue} and emitted while there is demand, {@link #refill} is called
+     * when the buffer is empty and the subscriber wants more; signals are serialized by {@code wip}
+     */
+    abstract static class DemandSubscription<T> implements Subscription {
+
+        final Subscriber<? super T> subscriber;
+
+        final Deque<T> queue = new ArrayDeque<>();
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        volatile boolean cancelled;
+
+        volatile boolean done;
+
+        volatile Throwable error;
+
+        DemandSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * fill {@code queue} or set {@code done}
+         *
+         * @return false if the elements arrive later and {@link #drain} will be called again then
+         */
+        abstract boolean refill();
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // rule 3.9: signal onError and stop the source, as cancel() does
+                error = new IllegalArgumentException("non-positive request " + n);
+                done = true;
+                synchronized (queue) {
+                    queue.clear();
+                }
+                cancelSource();
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelSource();
+        }
+
+        /**
+         * stop producing elements, called once the subscription ends early
+         */
+        void cancelSource() {
+        }
+
+        final void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                while (!cancelled) {
+                    T element;
+                    synchronized (queue) {
+                        element = demand.get() > 0 ? queue.poll() : null;
+                    }
+                    if (element != null) {
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+                        subscriber.onNext(element);
+                        continue;
+                    }
+                    boolean empty;
+                    synchronized (queue) {
+                        empty = queue.isEmpty();
+                    }
+                    if (empty && done) {
+                        cancelled = true;
+                        if (error != null) {
+                            subscriber.onError(error);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                        break;
+                    }
+                    if (!empty || demand.get() == 0 || !refill()) {
+                        break;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 分页订阅
+     */
+    static final class PagedSubscription<T> extends DemandSubscription<T> {
+
+        private final Pager<T> pager;
+
+        PagedSubscription(Subscriber<? super T> subscriber, Pager<T> pager) {
+            super(subscriber);
+            this.pager = pager;
+        }
+
+        @Override
+        boolean refill() {
+            try {
+                List<T> page = pager.next();
+                if (page == null) {
+                    done = true;
+                } else {
+                    synchronized (queue) {
+                        queue.addAll(page);
+                    }
+                }
+            } catch (Exception e) {
+                error = e;
+                done = true;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 批量订阅, 同时订阅上游的键
+     */
+    static final class BatchedSubscription<T> extends DemandSubscription<T> implements Subscriber<String> {
+
+        private final int batchSize;
+
+        private final BatchLoader<T> loader;
+
+        private final List<String> batch = new ArrayList<>();
+
+        private volatile Subscription upstream;
+
+        private volatile boolean pending;
+
+        BatchedSubscription(Subscriber<? super T> subscriber, int batchSize, BatchLoader<T> loader) {
+            super(subscriber);
+            this.batchSize = batchSize;
+            this.loader = loader;
+        }
+
+        @Override
+        boolean refill() {
+            if (upstream != null && !pending) {
+                pending = true;
+                upstream.request(batchSize);
+            }
+            return false;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            if (cancelled) {
+                subscription.cancel();
+            } else {
+                drain();
+            }
+        }
+
+        @Override
+        public void onNext(String key) {
+            if (done || cancelled) {
+                // already in flight when upstream was cancelled
+                return;
+            }
+            batch.add(key);
+            if (batch.size() >= batchSize) {
+                load(false);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (done || cancelled) {
+                return;
+            }
+            load(true);
+        }
+
+        private void load(boolean last) {
+            try {
+                if (!batch.isEmpty()) {
+                    List<T> elements = loader.load(new ArrayList<>(batch));
+                    batch.clear();
+                    synchronized (queue) {
+                        queue.addAll(elements);
+                    }
+                }
+            } catch (Exception e) {
+                error = e;
+                upstream.cancel();
+                last = true;
+            }
+            if (last) {
+                done = true;
+            }
+            pending = false;
+            drain();
+        }
+
+        @Override
+        void cancelSource() {
+            Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.mariston.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 超时策略
+ * <p>
+ * every TTL written by {@link RedisClient} is extended by a random jitter of up to {@code jitterPercent}
+ * percent plus up to {@code jitterSeconds} seconds, so keys written together with the same TTL do not expire
+ * in the same second. Keys are never given a shorter TTL than requested. A TTL is counted in the expiry
+ * distribution once redis has acknowledged the write, failed and spooled writes are not counted.
+ * <p>
+ * keys matching a prefix of {@code slidingExpiry} get their TTL refreshed after every read hit. Refreshes are
+ * deduplicated per key and per {@code minRefreshIntervalMillis}, and sent in the background as one pipelined
+ * {@link RedisClient#expireAll} per database every {@code flushIntervalMillis}, with the configured TTL and
+ * without jitter; refreshes are not counted in the expiry distribution.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class TtlPolicy implements DisposableBean {
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(TtlPolicy.class);
+
+    /**
+     * 随机延长的最大百分比
+     */
+    private double jitterPercent;
+
+    /**
+     * 随机延长的最大秒数
+     */
+    private long jitterSeconds;
+
+    /**
+     * 滑动过期: 键前缀 -> 时长(秒)
+     */
+    private Map<String, Long> slidingExpiry = Collections.emptyMap();
+
+    /**
+     * 同一个键两次续期的最小间隔(毫秒)
+     */
+    private long minRefreshIntervalMillis = 1000;
+
+    /**
+     * 续期批量发送周期(毫秒)
+     */
+    private long flushIntervalMillis = 100;
+
+    /**
+     * 过期分布统计的桶宽(秒)
+     */
+    private long bucketSeconds = 60;
+
+    /**
+     * 过期分布统计的最大桶数
+     */
+    private int maxBuckets = 10080;
+
+    /**
+     * 过期分布: 桶起始时间(秒) -> 键数
+     */
+    private final ConcurrentSkipListMap<Long, LongAdder> expiries = new ConcurrentSkipListMap<>();
+
+    /**
+     * 待续期的键: db:key -> 时长
+     */
+    private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 最近续期时间: db:key -> 毫秒
+     */
+    private final ConcurrentMap<String, Long> refreshed = new ConcurrentHashMap<>();
+
+    private final AtomicLong refreshRequests = new AtomicLong();
+
+    private final AtomicLong refreshSent = new AtomicLong();
+
+    private RedisClient redisClient;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * jitter a TTL and count it in the expiry distribution
+     *
+     * @param seconds requested TTL
+     * @return TTL to write
+     */
+    public long apply(long seconds) {
+        long ttl = jitter(seconds);
+        count(ttl);
+        return ttl;
+    }
+
+    /**
+     * @param seconds requested TTL
+     * @return the TTL extended by a random jitter, not counted in the expiry distribution
+     */
+    long jitter(long seconds) {
+        long ttl = seconds;
+        if (seconds > 0) {
+            long max = (long) (seconds * jitterPercent / 100.0) + jitterSeconds;
+            if (max > 0) {
+                ttl += ThreadLocalRandom.current().nextLong(max + 1);
+            }
+        }
+        return ttl;
+    }
+
+    /**
+     * count a TTL that has been written in the expiry distribution
+     *
+     * @param ttl TTL written
+     */
+    void count(long ttl) {
+        if (ttl > 0) {
+            long bucket = (System.currentTimeMillis() / 1000 + ttl) / bucketSeconds * bucketSeconds;
+            LongAdder count = expiries.get(bucket);
+            if (count == null && expiries.size() >= maxBuckets) {
+                prune();
+            }
+            if (count == null && expiries.size() < maxBuckets) {
+                LongAdder created = new LongAdder();
+                count = expiries.putIfAbsent(bucket, created);
+                if (count == null) {
+                    count = created;
+                }
+            }
+            if (count != null) {
+                count.increment();
+            }
+        }
+    }
+
+    /**
+     * called by {@link RedisClient} after a read hit, queues a refresh for sliding-expiry keys
+     *
+     * @param index the index of database
+     * @param key   key
+     */
+    void onRead(int index, String key) {
+        Long seconds = sliding(key);
+        if (seconds == null) {
+            return;
+        }
+        refreshRequests.incrementAndGet();
+        String id = index + ":" + key;
+        long now = System.currentTimeMillis();
+        Long last = refreshed.get(id);
+        if (last != null && now - last < minRefreshIntervalMillis) {
+            return;
+        }
+        pending.putIfAbsent(id, seconds);
+    }
+
+    /**
+     * @param key key
+     * @return the sliding TTL of the longest matching prefix, null if the key does not slide
+     */
+    Long sliding(String key) {
+        Long seconds = null;
+        int length = -1;
+        for (Map.Entry<String, Long> entry : slidingExpiry.entrySet()) {
+            if (key.startsWith(entry.getKey()) && entry.getKey().length() > length) {
+                seconds = entry.getValue();
+                length = entry.getKey().length();
+            }
+        }
+        return seconds;
+    }
+
+    /**
+     * send the queued refreshes, grouped by database and TTL
+     */
+    void flush() {
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Map<String, List<String>> groups = new HashMap<>();
+            for (Iterator<Map.Entry<String, Long>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Long> entry = it.next();
+                it.remove();
+                String id = entry.getKey();
+                int separator = id.indexOf(':');
+                String group = id.substring(0, separator) + ":" + entry.getValue();
+                List<String> keys = groups.get(group);
+                if (keys == null) {
+                    keys = new ArrayList<>();
+                    groups.put(group, keys);
+                }
+                keys.add(id.substring(separator + 1));
+                refreshed.put(id, now);
+            }
+            for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+                String[] parts = group.getKey().split(":");
+                // the sliding TTL as configured: refreshes are neither jittered again nor counted as new expiries
+                redisClient.expireAll(group.getValue(), Long.parseLong(parts[1]), Integer.parseInt(parts[0]), false);
+                refreshSent.addAndGet(group.getValue().size());
+            }
+            // forget keys whose refresh interval has passed
+            for (Iterator<Long> it = refreshed.values().iterator(); it.hasNext(); ) {
+                if (now - it.next() >= minRefreshIntervalMillis) {
+                    it.remove();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("===续期异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+        }
+    }
+
+    /**
+     * bind to the client that sends refreshes
+     *
+     * @param redisClient {@link RedisClient}
+     */
+    synchronized void attach(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        if (scheduler == null && !slidingExpiry.isEmpty()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "redis-ttl-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return future expirations per bucket, keyed by the epoch second the bucket starts
+     */
+    public SortedMap<Long, Long> getExpiryDistribution() {
+        prune();
+        SortedMap<Long, Long> result = new TreeMap<>();
+        for (Map.Entry<Long, LongAdder> entry : expiries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    /**
+     * drop the buckets that have already expired
+     */
+    private void prune() {
+        long now = System.currentTimeMillis() / 1000;
+        expiries.headMap(now / bucketSeconds * bucketSeconds).clear();
+    }
+
+    /**
+     * @return reads of sliding-expiry keys
+     */
+    public long getRefreshRequests() {
+        return refreshRequests.get();
+    }
+
+    /**
+     * @return EXPIRE commands sent for sliding-expiry keys after deduplication
+     */
+    public long getRefreshSent() {
+        return refreshSent.get();
+    }
+
+    /**
+     * @return refreshes waiting to be sent
+     */
+    public int getRefreshPending() {
+        return pending.size();
+    }
+
+    public void setJitterPercent(double jitterPercent) {
+        Assert.isTrue(jitterPercent >= 0, "jitterPercent must not be negative");
+        this.jitterPercent = jitterPercent;
+    }
+
+    public void setJitterSeconds(long jitterSeconds) {
+        Assert.isTrue(jitterSeconds >= 0, "jitterSeconds must not be negative");
+        this.jitterSeconds = jitterSeconds;
+    }
+
+    public void setSlidingExpiry(Map<String, Long> slidingExpiry) {
+        this.slidingExpiry = slidingExpiry == null ? Collections.<String, Long>emptyMap() : new HashMap<>(slidingExpiry);
+    }
+
+    public void setMinRefreshIntervalMillis(long minRefreshIntervalMillis) {
+        this.minRefreshIntervalMillis = minRefreshIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public void setBucketSeconds(long bucketSeconds) {
+        Assert.isTrue(bucketSeconds > 0, "bucketSeconds must be positive");
+        this.bucketSeconds = bucketSeconds;
+    }
+
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+}
@@ -0,0 +1,601 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 本地写入缓冲
+ * <p>
+ * writes that fail while redis is unreachable (e.g. during a sentinel failover) are appended to memory-mapped
+ * segment files under {@code directory}. While a backlog exists, new writes are appended too, so that the
+ * writes of one key are replayed in the order they were made. A background drainer replays the backlog in
+ * pipelined batches once the master is reachable again; TTLs are shortened by the time spent in the spool and
+ * keys whose TTL has passed are deleted instead of written.
+ * <p>
+ * the spool holds at most {@code maxSegments} segments of {@code segmentSize} bytes, writes beyond that are
+ * dropped and counted once. While the backlog is full {@link RedisClient} rejects new writes rather than send
+ * them ahead of the older spooled writes of the same key, which would be replayed on top of them. For the same
+ * reason writes that can not be spooled ({@link RedisBatch}, {@link HeartStream}, {@link HeartSeries},
+ * {@link BulkLoader}) are refused while a backlog exists, and FLUSHDB is spooled behind it.
+ * <p>
+ * Segment layout: a 16 byte header (magic, version, read position) followed by records of
+ * {@code [int length][int crc32][payload]}; a zero length marks the end of the written data.
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class WriteSpool implements InitializingBean, DisposableBean {
+
+    /**
+     * 缓冲的写操作
+     */
+    public enum Op {
+        SET, HMSET, DEL, HDEL, EXPIRE, FLUSHDB
+    }
+
+    /**
+     * 日志
+     */
+    private Logger logger = LoggerFactory.getLogger(WriteSpool.class);
+
+    private static final int MAGIC = 0x52535031;
+
+    private static final int HEADER = 16;
+
+    private static final int READ_POSITION = 8;
+
+    /**
+     * 缓冲目录
+     */
+    private File directory;
+
+    /**
+     * 段文件大小(字节)
+     */
+    private int segmentSize = 64 * 1024 * 1024;
+
+    /**
+     * 最大段数
+     */
+    private int maxSegments = 16;
+
+    /**
+     * 回放周期(毫秒)
+     */
+    private long drainIntervalMillis = 1000;
+
+    /**
+     * 每批回放的记录数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 回放命令超时(毫秒)
+     */
+    private long commandTimeoutMillis = 10000;
+
+    /**
+     * 段, 最早的在前
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    /**
+     * 删除失败(仍被映射)的段文件, 稍后重试
+     */
+    private final List<File> obsolete = new ArrayList<>();
+
+    private long nextSegmentId;
+
+    private final AtomicLong appended = new AtomicLong();
+
+    private final AtomicLong replayed = new AtomicLong();
+
+    private final AtomicLong expired = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong backlog = new AtomicLong();
+
+    private volatile String lastError;
+
+    private RedisClient redisClient;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @return true while spooled writes wait to be replayed
+     */
+    public boolean hasBacklog() {
+        return backlog.get() > 0;
+    }
+
+    /**
+     * append a write
+     *
+     * @param op      operation
+     * @param index   the index of database
+     * @param key     key
+     * @param seconds TTL in seconds, 0 or negative for none
+     * @param args    value for SET, fields and values for HMSET, fields for HDEL
+     * @return false if the spool is full and the write was dropped
+     */
+    public boolean append(Op op, int index, byte[] key, long seconds, byte[]... args) {
+        int size = 1 + 4 + 8 + 8 + 4 + key.length + 4;
+        for (byte[] arg : args) {
+            size += 4 + arg.length;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.put((byte) op.ordinal()).putInt(index).putLong(seconds).putLong(System.currentTimeMillis());
+        payload.putInt(key.length).put(key).putInt(args.length);
+        for (byte[] arg : args) {
+            payload.putInt(arg.length).put(arg);
+        }
+        byte[] bytes = payload.array();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        synchronized (segments) {
+            try {
+                Segment segment = segments.peekLast();
+                if (segment == null || segment.sealed || segment.writePosition + 8 + bytes.length > segmentSize) {
+                    if (segment != null) {
+                        segment.sealed = true;
+                    }
+                    if (segments.size() >= maxSegments || HEADER + 8 + bytes.length > segmentSize) {
+                        dropped.incrementAndGet();
+                        logger.error("===写入缓冲已满, 丢弃写入: {} {}", op, new String(key, "UTF-8"));
+                        return false;
+                    }
+                    segment = Segment.create(new File(directory, String.format("spool-%016d.seg", nextSegmentId++)), segmentSize);
+                    segments.addLast(segment);
+                }
+                int position = segment.writePosition;
+                ByteBuffer buffer = segment.buffer;
+                buffer.position(position + 8);
+                buffer.put(bytes);
+                buffer.putInt(position + 4, (int) crc.getValue());
+                buffer.putInt(position, bytes.length);
+                segment.writePosition = position + 8 + bytes.length;
+                appended.incrementAndGet();
+                backlog.incrementAndGet();
+                return true;
+            } catch (IOException e) {
+                dropped.incrementAndGet();
+                lastError = e.getMessage();
+                logger.error("===写入缓冲异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * replay one batch of the oldest segment
+     *
+     * @return number of records replayed
+     */
+    int drain() {
+        Segment segment;
+        synchronized (segments) {
+            retryDelete();
+            segment = segments.peekFirst();
+            // a finished segment is deleted and the drain continues with the next one
+            while (segment != null && segment.readPosition >= segment.writePosition && (segment.sealed || segments.size() > 1)) {
+                segments.removeFirst();
+                segment.delete(obsolete);
+                segment = segments.peekFirst();
+            }
+            if (segment == null) {
+                return 0;
+            }
+        }
+        List<Entry> batch = new ArrayList<>();
+        int end = segment.read(batch, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        // keep the order of each database, keys of different databases are independent
+        Map<Integer, List<Entry>> byIndex = new LinkedHashMap<>();
+        for (Entry entry : batch) {
+            List<Entry> entries = byIndex.get(entry.index);
+            if (entries == null) {
+                entries = new ArrayList<>();
+                byIndex.put(entry.index, entries);
+            }
+            entries.add(entry);
+        }
+        RedisAsyncConnection<byte[], byte[]> connection = null;
+        try {
+            long now = System.currentTimeMillis();
+            List<RedisFuture<?>> futures = new ArrayList<>(batch.size());
+            for (Map.Entry<Integer, List<Entry>> group : byIndex.entrySet()) {
+                if (connection == null) {
+                    connection = redisClient.getConn(group.getKey());
+                } else {
+                    connection.select(group.getKey());
+                }
+                for (Entry entry : group.getValue()) {
+                    futures.add(send(connection, entry, now));
+                }
+            }
+            for (RedisFuture<?> future : futures) {
+                future.get(commandTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (future.getError() != null) {
+                    throw new IllegalStateException(future.getError());
+                }
+            }
+        } catch (Exception e) {
+            // the batch is replayed again later, the operations are idempotent when repeated in order
+            lastError = e.getMessage();
+            logger.warn("===写入缓冲回放失败, 稍后重试:{}", e.getMessage());
+            return 0;
+        } finally {
+            if (connection != null) {
+                redisClient.returnConn(connection);
+            }
+        }
+        segment.commit(end);
+        for (Entry entry : batch) {
+            if (entry.op == Op.SET || entry.op == Op.HMSET) {
+                // recorded when spooled, a key filter rebuilt since then did not see the key
+                redisClient.written(entry.index, entry.key);
+            }
+        }
+        replayed.addAndGet(batch.size());
+        backlog.addAndGet(-batch.size());
+        return batch.size();
+    }
+
+    private RedisFuture<?> send(RedisAsyncConnection<byte[], byte[]> connection, Entry entry, long now) {
+        long ttlMillis = entry.seconds > 0 ? entry.seconds * 1000 - (now - entry.writtenAt) : 0;
+        if (entry.seconds > 0 && ttlMillis <= 0 && (entry.op == Op.SET || entry.op == Op.EXPIRE)) {
+            // expired while spooled
+            expired.incrementAndGet();
+            return connection.del(entry.key);
+        }
+        switch (entry.op) {
+            case SET:
+                return entry.seconds > 0 ? connection.psetex(entry.key, ttlMillis, entry.args[0]) : connection.set(entry.key, entry.args[0]);
+            case HMSET:
+                Map<byte[], byte[]> map = new LinkedHashMap<>();
+                for (int i = 0; i + 1 < entry.args.length; i += 2) {
+                    map.put(entry.args[i], entry.args[i + 1]);
+                }
+                return connection.hmset(entry.key, map);
+            case DEL:
+                return connection.del(entry.key);
+            case HDEL:
+                return connection.hdel(entry.key, entry.args);
+            case EXPIRE:
+                return connection.pexpire(entry.key, ttlMillis);
+            case FLUSHDB:
+                return connection.flushdb();
+            default:
+                throw new IllegalStateException("unknown op " + entry.op);
+        }
+    }
+
+    private void retryDelete() {
+        for (Iterator<File> it = obsolete.iterator(); it.hasNext(); ) {
+            File file = it.next();
+            if (!file.exists() || file.delete()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * bind to the client that replays the backlog
+     *
+     * @param redisClient {@link RedisClient}
+     */
+    synchronized void attach(RedisClient redisClient) {
+        this.redisClient = redisClient;
+        if (scheduler == null && directory != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "redis-write-spool");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    while (redisClient != null && drain() > 0) {
+                        // keep draining while batches succeed
+                    }
+                } catch (Exception e) {
+                    logger.error("===写入缓冲回放异常[{}]:{}", e.getStackTrace()[0], e.getMessage());
+                }
+            }, drainIntervalMillis, drainIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * recover the segments left by the previous run
+     */
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        Assert.notNull(directory, "the directory of the spool is null");
+        Assert.isTrue(segmentSize > HEADER + 8, "segmentSize is too small");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can not create " + directory);
+        }
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("spool-") && name.endsWith(".seg"));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        synchronized (segments) {
+            for (File file : files) {
+                Segment segment = Segment.open(file);
+                long id = Long.parseLong(file.getName().substring(6, file.getName().length() - 4));
+                nextSegmentId = Math.max(nextSegmentId, id + 1);
+                int records = segment.count();
+                if (records == 0) {
+                    segment.delete(obsolete);
+                    continue;
+                }
+                segments.addLast(segment);
+                backlog.addAndGet(records);
+            }
+        }
+        if (backlog.get() > 0) {
+            logger.info("===恢复写入缓冲: {} 条记录, {} 个段", backlog.get(), segments.size());
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        synchronized (segments) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        }
+    }
+
+    /**
+     * @return spooled writes waiting to be replayed
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * @return bytes waiting to be replayed
+     */
+    public long getBacklogBytes() {
+        long bytes = 0;
+        synchronized (segments) {
+            for (Segment segment : segments) {
+                bytes += segment.writePosition - segment.readPosition;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return segment files in use
+     */
+    public int getSegments() {
+        synchronized (segments) {
+            return segments.size();
+        }
+    }
+
+    public long getAppended() {
+        return appended.get();
+    }
+
+    public long getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * @return writes whose TTL passed while spooled, replayed as DEL
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return writes dropped because the spool was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    public void setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public void setMaxSegments(int maxSegments) {
+        Assert.isTrue(maxSegments > 0, "maxSegments must be positive");
+        this.maxSegments = maxSegments;
+    }
+
+    public void setDrainIntervalMillis(long drainIntervalMillis) {
+        this.drainIntervalMillis = drainIntervalMillis;
+    }
+
+    public void setBatchSize(int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) {
+        this.commandTimeoutMillis = commandTimeoutMillis;
+    }
+
+    /**
+     * 缓冲的写入
+     */
+    static final class Entry {
+        Op op;
+        int index;
+        long seconds;
+        long writtenAt;
+        byte[] key;
+        byte[][] args;
+    }
+
+    /**
+     * 段文件
+     */
+    static final class Segment {
+
+        final File file;
+
+        final FileChannel channel;
+
+        final MappedByteBuffer buffer;
+
+        volatile int writePosition;
+
+        volatile int readPosition;
+
+        volatile boolean sealed;
+
+        private Segment(File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(File file, int size) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segment.buffer.putInt(0, MAGIC);
+            segment.buffer.putInt(4, 1);
+            segment.buffer.putLong(READ_POSITION, HEADER);
+            segment.writePosition = HEADER;
+            segment.readPosition = HEADER;
+            return segment;
+        }
+
+        static Segment open(File file) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            segment.sealed = true;
+            if (channel.size() < HEADER || segment.buffer.getInt(0) != MAGIC) {
+                segment.writePosition = HEADER;
+                segment.readPosition = HEADER;
+                return segment;
+            }
+            segment.readPosition = (int) segment.buffer.getLong(READ_POSITION);
+            // the written data ends at the first empty or corrupt record
+            int position = HEADER;
+            ByteBuffer view = segment.buffer.duplicate();
+            while (position + 8 <= view.capacity()) {
+                int length = view.getInt(position);
+                if (length <= 0 || position + 8 + length > view.capacity() || !valid(view, position, length)) {
+                    break;
+                }
+                position += 8 + length;
+            }
+            segment.writePosition = position;
+            segment.readPosition = Math.min(Math.max(segment.readPosition, HEADER), position);
+            return segment;
+        }
+
+        private static boolean valid(ByteBuffer view, int position, int length) {
+            byte[] bytes = new byte[length];
+            view.position(position + 8);
+            view.get(bytes);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            return (int) crc.getValue() == view.getInt(position + 4);
+        }
+
+        /**
+         * @return records not yet replayed
+         */
+        int count() {
+            int count = 0;
+            int position = readPosition;
+            while (position < writePosition) {
+                position += 8 + buffer.getInt(position);
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * read up to {@code max} records from the read position
+         *
+         * @return the position after the last record read
+         */
+        int read(List<Entry> entries, int max) {
+            ByteBuffer view = buffer.duplicate();
+            int position = readPosition;
+            int limit = writePosition;
+            while (position < limit && entries.size() < max) {
+                int length = view.getInt(position);
+                view.position(position + 8);
+                Entry entry = new Entry();
+                entry.op = Op.values()[view.get()];
+                entry.index = view.getInt();
+                entry.seconds = view.getLong();
+                entry.writtenAt = view.getLong();
+                entry.key = new byte[view.getInt()];
+                view.get(entry.key);
+                entry.args = new byte[view.getInt()][];
+                for (int i = 0; i < entry.args.length; i++) {
+                    entry.args[i] = new byte[view.getInt()];
+                    view.get(entry.args[i]);
+                }
+                entries.add(entry);
+                position += 8 + length;
+            }
+            return position;
+        }
+
+        /**
+         * persist the read position after a successful replay
+         */
+        void commit(int position) {
+            readPosition = position;
+            buffer.putLong(READ_POSITION, position);
+        }
+
+        void delete(List<File> obsolete) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            if (!file.delete()) {
+                // still mapped on some platforms, retried on the next drain
+                obsolete.add(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * resize decisions of {@link AdaptivePoolSizer}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class AdaptivePoolSizerTest {
+
+    private AdaptivePoolSizer sizer() {
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer();
+        sizer.setMinTotal(5);
+        sizer.setMaxTotal(50);
+        sizer.setTargetWaitMillis(5);
+        return sizer;
+    }
+
+    private AdaptivePoolSizer.Sample sample(double throughput, double waitMillis, double holdMillis, int peak, int waiters) {
+        AdaptivePoolSizer.Sample sample = new AdaptivePoolSizer.Sample();
+        sample.throughput = throughput;
+        sample.borrowWaitMillis = waitMillis;
+        sample.holdMillis = holdMillis;
+        sample.peakInFlight = peak;
+        sample.waiters = waiters;
+        return sample;
+    }
+
+    @Test
+    public void growWhenCallersWait() throws Exception {
+        AdaptivePoolSizer.ResizeDecision decision = sizer().decide(20, sample(1000, 12, 10, 20, 3));
+        assertEquals(22, decision.getTo());
+    }
+
+    @Test
+    public void growToLittleTarget() throws Exception {
+        // 4000/s * 10ms * 1.5 = 60 -> capped at 50
+        AdaptivePoolSizer.ResizeDecision decision = sizer().decide(20, sample(4000, 8, 10, 20, 0));
+        assertEquals(50, decision.getTo());
+    }
+
+    @Test
+    public void shrinkWhenIdle() throws Exception {
+        AdaptivePoolSizer.ResizeDecision decision = sizer().decide(20, sample(100, 0, 2, 2, 0));
+        assertEquals(15, decision.getTo());
+    }
+
+    @Test
+    public void neverShrinkBelowLittleTarget() throws Exception {
+        // 1000/s * 10ms * 1.5 = 15 in flight needed on average
+        AdaptivePoolSizer.ResizeDecision decision = sizer().decide(40, sample(1000, 0, 10, 12, 0));
+        assertEquals(30, decision.getTo());
+        decision = sizer().decide(20, sample(1000, 0, 10, 9, 0));
+        assertEquals(15, decision.getTo());
+    }
+
+    @Test
+    public void holdWithinTarget() throws Exception {
+        AdaptivePoolSizer.ResizeDecision decision = sizer().decide(20, sample(1000, 1, 10, 15, 0));
+        assertEquals(20, decision.getTo());
+        assertEquals("within target", decision.getReason());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisAsyncConnection<byte[], byte[]> connection(boolean selectFails) {
+        return (RedisAsyncConnection<byte[], byte[]>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if (selectFails && "select".equals(method.getName())) {
+                        throw new IllegalStateException("closed");
+                    }
+                    return "select".equals(method.getName()) ? "OK" : null;
+                });
+    }
+
+    private RedisClient client(AdaptivePoolSizer sizer, Deque<RedisAsyncConnection<byte[], byte[]>> connections) {
+        RedisClient client = new RedisClient();
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return connections.pop();
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        client.setPoolSizer(sizer);
+        return client;
+    }
+
+    @Test
+    public void holdTimePerConnection() throws Exception {
+        AdaptivePoolSizer sizer = sizer();
+        Deque<RedisAsyncConnection<byte[], byte[]>> connections = new ArrayDeque<>();
+        connections.push(connection(false));
+        connections.push(connection(false));
+        RedisClient client = client(sizer, connections);
+
+        RedisAsyncConnection<byte[], byte[]> outer = client.getConn(0);
+        Thread.sleep(50);
+        RedisAsyncConnection<byte[], byte[]> inner = client.getConn(0);
+        assertEquals(2, sizer.getInFlight());
+        // the outer connection is returned first and from another thread
+        Thread thread = new Thread(() -> client.returnConn(outer));
+        thread.start();
+        thread.join();
+        client.returnConn(inner);
+        assertEquals(0, sizer.getInFlight());
+
+        assertTrue(sizer.getHoldNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void selectFailureReturnsConnection() throws Exception {
+        AdaptivePoolSizer sizer = sizer();
+        Deque<RedisAsyncConnection<byte[], byte[]>> connections = new ArrayDeque<>();
+        connections.push(connection(true));
+        try {
+            client(sizer, connections).getConn(0);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(0, sizer.getInFlight());
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.KeyScanCursor;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.codec.ByteArrayCodec;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.CommandOutput;
+import com.lambdaworks.redis.protocol.CommandType;
+import com.lambdaworks.redis.protocol.ProtocolKeyword;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * file formats, import pipeline and export of {@link BulkLoader}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class BulkLoaderTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private BulkLoader.RecordReader reader(String content, BulkLoader.Format format) throws Exception {
+        File file = File.createTempFile("bulk", "." + format.name().toLowerCase());
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, content, UTF8);
+        return BulkLoader.openReader(file, format);
+    }
+
+    private String command(byte[][] command) {
+        StringBuilder builder = new StringBuilder();
+        for (byte[] arg : command) {
+            builder.append(builder.length() == 0 ? "" : " ").append(new String(arg, UTF8));
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void resp() throws Exception {
+        BulkLoader.RecordReader reader = reader("*3\r\n$3\r\nSET\r\n$3\r\nkey\r\n$5\r\nva\r\nl\r\n*2\r\n$3\r\nDEL\r\n$3\r\nkey\r\n", BulkLoader.Format.RESP);
+        assertEquals("SET key va\r\nl", command(reader.next()[0]));
+        assertEquals("DEL key", command(reader.next()[0]));
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void csv() throws Exception {
+        BulkLoader.RecordReader reader = reader("key,value,ttl\nk1,v1\n\"k,2\",\"say \"\"hi\"\"\",100\n", BulkLoader.Format.CSV);
+        assertEquals("SET k1 v1", command(reader.next()[0]));
+        assertEquals("SETEX k,2 100 say \"hi\"", command(reader.next()[0]));
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void ndjson() throws Exception {
+        BulkLoader.RecordReader reader = reader("{\"key\":\"k1\",\"value\":\"第一\"}\n"
+                + "{\"key\":\"k2\",\"ttl\":60,\"base64\":\"AQI=\"}\n"
+                + "{\"key\":\"map\",\"ttl\":10,\"hash\":{\"f\":\"v\"}}\n", BulkLoader.Format.NDJSON);
+        assertEquals("SET k1 第一", command(reader.next()[0]));
+        byte[][] setex = reader.next()[0];
+        assertEquals("SETEX", new String(setex[0], UTF8));
+        assertArrayEquals(new byte[]{1, 2}, setex[3]);
+        byte[][][] hash = reader.next();
+        assertEquals(3, hash.length);
+        assertEquals("DEL map", command(hash[0]));
+        assertEquals("HMSET map f v", command(hash[1]));
+        assertEquals("EXPIRE map 10", command(hash[2]));
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void position() throws Exception {
+        // encoded bytes, CRLF endings, skipped header and blank lines are counted with the next record
+        BulkLoader.RecordReader reader = reader("key,value\r\nk1,第一\r\n\r\nk2,v\n", BulkLoader.Format.CSV);
+        assertEquals("SET k1 第一", command(reader.next()[0]));
+        assertEquals(11 + 11, reader.position());
+        assertEquals("SET k2 v", command(reader.next()[0]));
+        assertEquals(2 + 5, reader.position());
+        assertNull(reader.next());
+        reader.close();
+    }
+
+    /**
+     * a client whose connections answer each dispatched command 1ms later, OK or an error for the keys in
+     * {@code failing}; the commands are recorded per connection
+     */
+    private static final class Stub {
+
+        private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+        final List<List<byte[][]>> connections = Collections.synchronizedList(new ArrayList<>());
+
+        final AtomicInteger maxOutstanding = new AtomicInteger();
+
+        final Set<String> failing = new HashSet<>();
+
+        final ScheduledExecutorService replies = Executors.newSingleThreadScheduledExecutor();
+
+        final RedisClient client = new RedisClient();
+
+        Stub() {
+            client.setDatabases(16);
+            client.setDefaultLettucePool(new DefaultLettucePool() {
+                @Override
+                public RedisAsyncConnection<byte[], byte[]> getResource() {
+                    return connection();
+                }
+
+                @Override
+                public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private RedisAsyncConnection<byte[], byte[]> connection() {
+            final List<byte[][]> commands = Collections.synchronizedList(new ArrayList<>());
+            connections.add(commands);
+            final AtomicInteger outstanding = new AtomicInteger();
+            return (RedisAsyncConnection<byte[], byte[]>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                        if (!"dispatch".equals(method.getName())) {
+                            return "OK";
+                        }
+                        ProtocolKeyword keyword = (ProtocolKeyword) args[0];
+                        CommandOutput<byte[], byte[], List<Object>> output = (CommandOutput<byte[], byte[], List<Object>>) args[1];
+                        byte[][] command = command(keyword, (CommandArgs<?, ?>) args[2]);
+                        commands.add(command);
+                        Command<byte[], byte[], List<Object>> dispatched = new Command<>(keyword, output, null);
+                        int now = outstanding.incrementAndGet();
+                        maxOutstanding.accumulateAndGet(now, Math::max);
+                        replies.schedule(() -> {
+                            outstanding.decrementAndGet();
+                            boolean fail = command.length > 1 && failing.contains(new String(command[1], UTF8));
+                            if (fail) {
+                                output.setError(ByteBuffer.wrap("ERR failed".getBytes(UTF8)));
+                            } else {
+                                output.set(ByteBuffer.wrap("OK".getBytes(UTF8)));
+                            }
+                            dispatched.complete();
+                        }, 1, TimeUnit.MILLISECONDS);
+                        return dispatched;
+                    });
+        }
+
+        /**
+         * the name and the arguments of a dispatched command
+         */
+        private static byte[][] command(ProtocolKeyword keyword, CommandArgs<?, ?> args) {
+            ByteBuffer buffer = args.buffer();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            String text = new String(bytes, LATIN1);
+            List<byte[]> command = new ArrayList<>();
+            command.add(keyword.getBytes());
+            Matcher matcher = Pattern.compile("\\$(\\d+)\r\n").matcher(text);
+            int position = 0;
+            while (matcher.find(position)) {
+                int start = matcher.end();
+                int length = Integer.parseInt(matcher.group(1));
+                command.add(text.substring(start, start + length).getBytes(LATIN1));
+                position = start + length + 2;
+            }
+            return command.toArray(new byte[command.size()][]);
+        }
+
+        List<String> commands(int connection) {
+            List<String> commands = new ArrayList<>();
+            for (byte[][] command : connections.get(connection)) {
+                StringBuilder builder = new StringBuilder();
+                for (byte[] arg : command) {
+                    builder.append(builder.length() == 0 ? "" : " ").append(new String(arg, UTF8));
+                }
+                commands.add(builder.toString());
+            }
+            return commands;
+        }
+
+        BulkLoader loader(int workers, int maxInFlight) {
+            BulkLoader loader = new BulkLoader(client);
+            loader.setWorkers(workers);
+            loader.setMaxInFlight(maxInFlight);
+            loader.setCommandTimeoutMillis(5000);
+            loader.setProgressListener(null);
+            return loader;
+        }
+    }
+
+    private File file(String content) throws Exception {
+        File file = File.createTempFile("bulk", ".txt");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, content, UTF8);
+        return file;
+    }
+
+    private static String resp(String... args) {
+        StringBuilder builder = new StringBuilder("*").append(args.length).append("\r\n");
+        for (String arg : args) {
+            builder.append('$').append(arg.getBytes(UTF8).length).append("\r\n").append(arg).append("\r\n");
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void importRoutesByKey() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            content.append(resp("SET", "k" + i, "v" + i));
+        }
+        for (int i = 0; i < 30; i++) {
+            content.append(resp("DEL", "k" + i));
+        }
+        Stub stub = new Stub();
+        try {
+            BulkStats stats = stub.loader(3, 100).importFile(file(content.toString()), BulkLoader.Format.RESP, 1);
+            assertEquals(60, stats.getRecords());
+            assertEquals(60, stats.getCommands());
+            assertEquals(0, stats.getErrors());
+            assertEquals(3, stub.connections.size());
+            // every key on one connection, its SET before its DEL
+            Map<String, Integer> owners = new HashMap<>();
+            for (int c = 0; c < 3; c++) {
+                List<String> commands = stub.commands(c);
+                for (String command : commands) {
+                    String key = command.split(" ")[1];
+                    Integer owner = owners.put(key, c);
+                    assertTrue(key, owner == null || owner == c);
+                    if (command.startsWith("DEL")) {
+                        assertTrue(key, commands.indexOf("SET " + key + " v" + key.substring(1)) < commands.indexOf(command));
+                    }
+                }
+            }
+            assertEquals(30, owners.size());
+        } finally {
+            stub.replies.shutdownNow();
+        }
+    }
+
+    @Test
+    public void importKeepsWindow() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            content.append(resp("SET", "k" + i, "v"));
+        }
+        Stub stub = new Stub();
+        try {
+            BulkStats stats = stub.loader(1, 3).importFile(file(content.toString()), BulkLoader.Format.RESP, 1);
+            assertEquals(50, stats.getRecords());
+            int max = stub.maxOutstanding.get();
+            assertTrue(String.valueOf(max), max >= 2 && max <= 3);
+        } finally {
+            stub.replies.shutdownNow();
+        }
+    }
+
+    @Test
+    public void importCountsAcknowledgedRecords() throws Exception {
+        Stub stub = new Stub();
+        stub.failing.add("bad");
+        try {
+            BulkStats stats = stub.loader(2, 10).importFile(file("{\"key\":\"ok\",\"hash\":{\"f\":\"v\"}}\n"
+                    + "{\"key\":\"bad\",\"hash\":{\"f\":\"v\"}}\n"
+                    + "{\"key\":\"plain\",\"value\":\"v\"}\n"), BulkLoader.Format.NDJSON, 1);
+            // a record counts once every one of its commands is acknowledged
+            assertEquals(2, stats.getRecords());
+            assertEquals(3, stats.getCommands());
+            assertEquals(2, stats.getErrors());
+            assertEquals("ERR failed", stats.getLastError());
+        } finally {
+            stub.replies.shutdownNow();
+        }
+    }
+
+    @Test
+    public void importRejectsConnectionCommands() throws Exception {
+        Stub stub = new Stub();
+        try {
+            try {
+                stub.loader(1, 10).importFile(file(resp("SELECT", "2") + resp("SET", "a", "1")), BulkLoader.Format.RESP, 1);
+                fail("SELECT must be rejected");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("SELECT"));
+            }
+            try {
+                stub.loader(2, 10).importFile(file(resp("MULTI") + resp("SET", "a", "1") + resp("EXEC")), BulkLoader.Format.RESP, 1);
+                fail("MULTI must be rejected with more than one worker");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("MULTI"));
+            }
+        } finally {
+            stub.replies.shutdownNow();
+        }
+        // one worker keeps the transaction on one connection
+        stub = new Stub();
+        try {
+            BulkStats stats = stub.loader(1, 10).importFile(file(resp("MULTI") + resp("SET", "a", "1") + resp("EXEC")), BulkLoader.Format.RESP, 1);
+            assertEquals(3, stats.getRecords());
+            assertEquals(Arrays.asList("MULTI", "SET a 1", "EXEC"), stub.commands(0));
+        } finally {
+            stub.replies.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void exportRoundTrip() throws Exception {
+        final Map<String, Object> database = new LinkedHashMap<>();
+        byte[] binary = {(byte) 0xff, 0, (byte) 0xc3, 'a'};
+        database.put("str", binary);
+        Map<byte[], byte[]> hash = new LinkedHashMap<>();
+        hash.put(new byte[]{(byte) 0xfe, 1}, new byte[]{(byte) 0x80, 2});
+        hash.put("name".getBytes(UTF8), "第一".getBytes(UTF8));
+        database.put("map", hash);
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    Object reply;
+                    switch (method.getName()) {
+                        case "scan":
+                            KeyScanCursor<byte[]> cursor = new KeyScanCursor<>();
+                            for (String key : database.keySet()) {
+                                cursor.getKeys().add(key.getBytes(UTF8));
+                            }
+                            cursor.setFinished(true);
+                            reply = cursor;
+                            break;
+                        case "type":
+                            reply = database.get(new String((byte[]) args[0], UTF8)) instanceof Map ? "hash" : "string";
+                            break;
+                        case "pttl":
+                            reply = "str".equals(new String((byte[]) args[0], UTF8)) ? 59500L : -1L;
+                            break;
+                        case "get":
+                        case "hgetall":
+                            reply = database.get(new String((byte[]) args[0], UTF8));
+                            break;
+                        default:
+                            return "OK";
+                    }
+                    Command<byte[], byte[], Object> command = new Command<>(CommandType.GET,
+                            new CommandOutput<byte[], byte[], Object>(ByteArrayCodec.INSTANCE, reply) {
+                            }, null);
+                    command.complete();
+                    return command;
+                });
+        RedisClient client = new RedisClient();
+        client.setDatabases(16);
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        BulkLoader exporter = new BulkLoader(client);
+        exporter.setProgressListener(null);
+        File file = File.createTempFile("bulk", ".ndjson");
+        file.deleteOnExit();
+        BulkStats exported = exporter.exportFile(file, null, 1);
+        assertEquals(2, exported.getRecords());
+
+        Stub stub = new Stub();
+        try {
+            BulkStats imported = stub.loader(1, 10).importFile(file, BulkLoader.Format.NDJSON, 2);
+            assertEquals(2, imported.getRecords());
+            Map<String, byte[][]> commands = new HashMap<>();
+            for (byte[][] command : stub.connections.get(0)) {
+                commands.put(new String(command[0], UTF8), command);
+            }
+            byte[][] setex = commands.get("SETEX");
+            assertEquals("str", new String(setex[1], UTF8));
+            assertEquals("60", new String(setex[2], UTF8));
+            assertArrayEquals(binary, setex[3]);
+            byte[][] hmset = commands.get("HMSET");
+            assertEquals("map", new String(hmset[1], UTF8));
+            assertArrayEquals(new byte[]{(byte) 0xfe, 1}, hmset[2]);
+            assertArrayEquals(new byte[]{(byte) 0x80, 2}, hmset[3]);
+            assertEquals("name", new String(hmset[4], UTF8));
+            assertEquals("第一", new String(hmset[5], UTF8));
+            assertTrue(commands.containsKey("DEL"));
+        } finally {
+            stub.replies.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.ScoredValue;
+import com.lambdaworks.redis.codec.ByteArrayCodec;
+import com.lambdaworks.redis.output.NestedMultiOutput;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandOutput;
+import com.lambdaworks.redis.protocol.CommandType;
+import com.lambdaworks.redis.protocol.RedisStateMachine;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * paging and downsampling of {@link HeartSeries}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class HeartSeriesTest {
+
+    @Test
+    public void scriptLayout() throws Exception {
+        // the lua script reads the waveform length at offset 15 and the waveform from offset 19
+        Heart heart = new Heart();
+        heart.setMonitoredTime(100);
+        heart.setData(new byte[]{-3, 7});
+        byte[] bytes = HeartCodec.encode(heart);
+        assertEquals(2, ByteBuffer.wrap(bytes).getInt(15));
+        assertEquals(-3, bytes[19]);
+        assertEquals(7, bytes[20]);
+    }
+
+    @Test
+    public void buckets() throws Exception {
+        List<Object> reply = Arrays.<Object>asList(
+                Arrays.<Object>asList(60L, -3L, 7L, 8L, 4L),
+                Arrays.<Object>asList(180L, 1L, 1L, 1L, 1L));
+        List<HeartSeries.Bucket> buckets = HeartSeries.buckets(reply);
+        assertEquals(2, buckets.size());
+        assertEquals(60, buckets.get(0).getStart());
+        assertEquals(-3, buckets.get(0).getMin());
+        assertEquals(7, buckets.get(0).getMax());
+        assertEquals(2.0, buckets.get(0).getAvg(), 0.0001);
+        assertEquals(4, buckets.get(0).getCount());
+        assertEquals(180, buckets.get(1).getStart());
+    }
+
+    @Test
+    public void downsampleLoadsMissingScript() throws Exception {
+        final List<String> calls = new ArrayList<>();
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if ("evalsha".equals(method.getName()) || "eval".equals(method.getName())) {
+                        calls.add(method.getName());
+                        NestedMultiOutput<byte[], byte[]> output = new NestedMultiOutput<>(ByteArrayCodec.INSTANCE);
+                        Command<byte[], byte[], List<Object>> command = new Command<>(CommandType.EVAL, output, null);
+                        String reply = "evalsha".equals(method.getName())
+                                ? "-NOSCRIPT No matching script\r\n" : "*1\r\n*5\r\n:60\r\n:-3\r\n:7\r\n:8\r\n:4\r\n";
+                        new RedisStateMachine<byte[], byte[]>().decode(Unpooled.copiedBuffer(reply, Charset.forName("UTF-8")), command, output);
+                        command.complete();
+                        return command;
+                    }
+                    return "OK";
+                });
+        RedisClient client = new RedisClient();
+        client.setDatabases(16);
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        List<HeartSeries.Bucket> buckets = new HeartSeries(client).downsample("dev1", 0, 300, 60, 1);
+        assertEquals(Arrays.asList("evalsha", "eval"), calls);
+        assertEquals(1, buckets.size());
+        assertEquals(60, buckets.get(0).getStart());
+        assertEquals(4, buckets.get(0).getCount());
+    }
+
+    private static double bound(String bound, boolean[] exclusive) {
+        exclusive[0] = bound.startsWith("(");
+        return Double.parseDouble(exclusive[0] ? bound.substring(1) : bound);
+    }
+
+    /**
+     * a series whose sorted set holds {@code samples}; ZRANGEBYSCORE calls are recorded, and fail from the
+     * {@code failAt}-th on
+     */
+    private HeartSeries series(List<Heart> samples, final List<String> calls, final int failAt) {
+        final List<ScoredValue<byte[]>> set = new ArrayList<>();
+        for (Heart sample : samples) {
+            set.add(new ScoredValue<>(sample.getMonitoredTime(), HeartCodec.encode(sample)));
+        }
+        set.sort((a, b) -> a.score != b.score ? Double.compare(a.score, b.score) : HeartSeries.compare(a.value, b.value));
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if (!method.getName().startsWith("zrangebyscore")) {
+                        return "OK";
+                    }
+                    boolean scores = method.getName().endsWith("WithScores");
+                    calls.add(args[1] + " " + args[2] + (args.length > 3 ? " LIMIT " + args[3] + " " + args[4] : ""));
+                    if (calls.size() >= failAt) {
+                        throw new RedisException("connection lost");
+                    }
+                    boolean[] minExclusive = new boolean[1];
+                    boolean[] maxExclusive = new boolean[1];
+                    double min = bound((String) args[1], minExclusive);
+                    double max = bound((String) args[2], maxExclusive);
+                    long offset = args.length > 3 ? (Long) args[3] : 0;
+                    long count = args.length > 3 ? (Long) args[4] : Long.MAX_VALUE;
+                    List<Object> reply = new ArrayList<>();
+                    for (ScoredValue<byte[]> value : set) {
+                        boolean in = (minExclusive[0] ? value.score > min : value.score >= min)
+                                && (maxExclusive[0] ? value.score < max : value.score <= max);
+                        if (in && offset-- <= 0 && reply.size() < count) {
+                            reply.add(scores ? value : value.value);
+                        }
+                    }
+                    Command<byte[], byte[], Object> command = new Command<>(CommandType.ZRANGEBYSCORE,
+                            new CommandOutput<byte[], byte[], Object>(ByteArrayCodec.INSTANCE, reply) {
+                            }, null);
+                    command.complete();
+                    return command;
+                });
+        RedisClient client = new RedisClient();
+        client.setDatabases(16);
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        HeartSeries series = new HeartSeries(client);
+        series.setPageSize(2);
+        series.setParallelPages(1);
+        return series;
+    }
+
+    private static Heart heart(int time, int data) {
+        Heart heart = new Heart();
+        heart.setMonitoredTime(time);
+        heart.setData(new byte[]{(byte) data});
+        return heart;
+    }
+
+    @Test
+    public void pagesAfterLastSample() throws Exception {
+        // four samples of time 2 span the page boundaries
+        List<Heart> samples = Arrays.asList(heart(1, 1), heart(2, 5), heart(2, 2), heart(2, 4), heart(2, 3), heart(3, 6), heart(4, 7), heart(9, 8));
+        List<String> calls = new ArrayList<>();
+        List<Integer> read = series(samples, calls, Integer.MAX_VALUE).getRange("dev1", 0, 4, 1)
+                .map(heart -> heart.getMonitoredTime() * 10 + heart.getData()[0])
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(11, 22, 23, 24, 25, 36, 47), read);
+        // never an offset, ties of the last score read on their own
+        assertEquals(Arrays.asList("0 4 LIMIT 0 2", "2 2", "(2 4 LIMIT 0 2", "4 4", "(4 4 LIMIT 0 2"), calls);
+    }
+
+    @Test
+    public void failedPageThrows() throws Exception {
+        List<Heart> samples = Arrays.asList(heart(1, 1), heart(2, 2), heart(3, 3));
+        List<String> calls = new ArrayList<>();
+        Iterator<Heart> range = series(samples, calls, 2).getRange("dev1", 0, 4, 1).iterator();
+        assertEquals(1, range.next().getMonitoredTime());
+        assertEquals(2, range.next().getMonitoredTime());
+        try {
+            range.hasNext();
+            fail("a failed page must not end the range");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("connection lost"));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandArgs;
+import com.lambdaworks.redis.protocol.CommandOutput;
+import com.lambdaworks.redis.protocol.CommandType;
+import com.lambdaworks.redis.protocol.ProtocolKeyword;
+import com.lambdaworks.redis.protocol.RedisStateMachine;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * encoding and XREAD parsing of {@link HeartStream}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class HeartStreamTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private Heart heart(int time, String remark) {
+        Heart heart = new Heart();
+        heart.setMonitoredTime(time);
+        heart.setChannel(2);
+        heart.setSampleRate(250);
+        heart.setLeadEvent((short) 12);
+        heart.setData(new byte[]{1, 2, 3, -4});
+        heart.setRemark(remark);
+        return heart;
+    }
+
+    @Test
+    public void codec() throws Exception {
+        Heart heart = HeartCodec.decode(HeartCodec.encode(heart(1508650000, "心率正常")));
+        assertEquals(1508650000, heart.getMonitoredTime());
+        assertEquals(2, heart.getChannel());
+        assertEquals(250, heart.getSampleRate());
+        assertEquals(12, heart.getLeadEvent());
+        assertArrayEquals(new byte[]{1, 2, 3, -4}, heart.getData());
+        assertEquals("心率正常", heart.getRemark());
+        assertNull(HeartCodec.decode(HeartCodec.encode(heart(1, null))).getRemark());
+    }
+
+    /**
+     * decode a raw reply the way the connection does
+     */
+    private List<Object> reply(String resp) {
+        RawCommands.NullableMultiOutput output = new RawCommands.NullableMultiOutput();
+        Command<byte[], byte[], List<Object>> command = new Command<>(CommandType.GET, output, null);
+        ByteBuf buffer = Unpooled.copiedBuffer(resp, Charset.forName("ISO-8859-1"));
+        assertTrue(new RedisStateMachine<byte[], byte[]>().decode(buffer, command, output));
+        assertNull(command.getException());
+        return output.get();
+    }
+
+    @Test
+    public void parse() throws Exception {
+        String first = new String(HeartCodec.encode(heart(10, null)), "ISO-8859-1");
+        String second = new String(HeartCodec.encode(heart(20, null)), "ISO-8859-1");
+        List<Object> reply = reply("*1\r\n*2\r\n$10\r\nheart:dev1\r\n*2\r\n"
+                + "*2\r\n$3\r\n1-0\r\n*2\r\n$1\r\nd\r\n$" + first.length() + "\r\n" + first + "\r\n"
+                + "*2\r\n$3\r\n2-0\r\n*2\r\n$1\r\nd\r\n$" + second.length() + "\r\n" + second + "\r\n");
+        LinkedHashMap<String, Heart> samples = new LinkedHashMap<>();
+        HeartStream.parse(reply, samples);
+        assertEquals(Arrays.asList("1-0", "2-0"), Arrays.asList(samples.keySet().toArray()));
+        assertEquals(20, samples.get("2-0").getMonitoredTime());
+
+        // BLOCK timed out
+        samples.clear();
+        reply = reply("*-1\r\n");
+        assertNull(RawCommands.error(completed(reply)));
+        HeartStream.parse(reply, samples);
+        assertTrue(samples.isEmpty());
+    }
+
+    private Command<byte[], byte[], List<Object>> completed(List<Object> reply) {
+        RawCommands.NullableMultiOutput output = new RawCommands.NullableMultiOutput();
+        output.get().addAll(reply);
+        Command<byte[], byte[], List<Object>> command = new Command<>(CommandType.GET, output, null);
+        command.complete();
+        return command;
+    }
+
+    /**
+     * the {@code <n>} remark of the sample sent by an XADD
+     */
+    private int tag(CommandArgs<?, ?> args) {
+        ByteBuffer buffer = args.buffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        Matcher matcher = Pattern.compile("<(\\d+)>").matcher(new String(bytes, UTF8));
+        assertTrue(matcher.find());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * the explicit id of an XADD as {@code {millis, sequence}}
+     */
+    private long[] id(CommandArgs<?, ?> args) {
+        ByteBuffer buffer = args.buffer();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        Matcher matcher = Pattern.compile("\r\n(\\d+)-(\\d+)\r\n").matcher(new String(bytes, UTF8));
+        assertTrue(matcher.find());
+        return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2))};
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void requeueFailed() throws Exception {
+        // the stream as redis keeps it, samples up to applyUpTo are applied, up to answerUpTo are answered
+        final List<Integer> stored = new ArrayList<>();
+        final long[] top = {-1, 0};
+        final int[] applyUpTo = {1};
+        final int[] answerUpTo = {1};
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if ("dispatch".equals(method.getName())) {
+                        Command<byte[], byte[], List<Object>> command = new Command<>((ProtocolKeyword) args[0],
+                                (CommandOutput<byte[], byte[], List<Object>>) args[1], null);
+                        int sample = tag((CommandArgs<?, ?>) args[2]);
+                        long[] id = id((CommandArgs<?, ?>) args[2]);
+                        if (id[0] < top[0] || id[0] == top[0] && id[1] <= top[1]) {
+                            command.getOutput().setError(ByteBuffer.wrap(
+                                    "ERR The ID specified in XADD is equal or smaller than the target stream top item".getBytes(UTF8)));
+                            command.complete();
+                            return command;
+                        }
+                        if (sample <= applyUpTo[0]) {
+                            stored.add(sample);
+                            top[0] = id[0];
+                            top[1] = id[1];
+                        }
+                        if (sample <= answerUpTo[0]) {
+                            command.getOutput().set(ByteBuffer.wrap((id[0] + "-" + id[1]).getBytes(UTF8)));
+                        } else {
+                            command.setException(new RedisException("connection lost"));
+                        }
+                        command.complete();
+                        return command;
+                    }
+                    return "OK";
+                });
+        RedisClient client = new RedisClient();
+        client.setDatabases(16);
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        HeartStream stream = new HeartStream(client);
+        stream.setFlushIntervalMillis(3600000);
+        try {
+            // the connection is lost at the second sample
+            stream.appendSamples("dev1", Arrays.asList(heart(1, "<1>"), heart(2, "<2>"), heart(3, "<3>"), heart(4, "<4>")), 1);
+            stream.flush();
+            assertEquals(Collections.singletonList(1), stored);
+            assertEquals(1, stream.getWritten());
+            assertEquals(3, stream.getBuffered());
+
+            // the third sample is applied but its reply is lost
+            applyUpTo[0] = 3;
+            answerUpTo[0] = 2;
+            stream.appendSamples("dev1", Collections.singletonList(heart(6, "<6>")), 1);
+            stream.flush();
+            assertEquals(Arrays.asList(1, 2, 3), stored);
+            assertEquals(2, stream.getWritten());
+            assertEquals(3, stream.getBuffered());
+
+            applyUpTo[0] = Integer.MAX_VALUE;
+            answerUpTo[0] = Integer.MAX_VALUE;
+            stream.flush();
+            assertEquals(Arrays.asList(1, 2, 3, 4, 6), stored);
+            assertEquals(0, stream.getBuffered());
+            assertEquals(5, stream.getWritten());
+            assertEquals(0, stream.getErrors());
+        } finally {
+            stream.destroy();
+        }
+    }
+
+    @Test
+    public void ids() throws Exception {
+        final List<String> ids = new ArrayList<>();
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if ("dispatch".equals(method.getName())) {
+                        long[] id = id((CommandArgs<?, ?>) args[2]);
+                        ids.add(id[0] + "-" + id[1]);
+                        @SuppressWarnings("unchecked")
+                        Command<byte[], byte[], List<Object>> command = new Command<>((ProtocolKeyword) args[0],
+                                (CommandOutput<byte[], byte[], List<Object>>) args[1], null);
+                        command.complete();
+                        return command;
+                    }
+                    return "OK";
+                });
+        RedisClient client = new RedisClient();
+        client.setDatabases(16);
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        HeartStream stream = new HeartStream(client);
+        stream.setFlushIntervalMillis(3600000);
+        try {
+            // same time gets a sequence, an older time is kept after the newer ones
+            stream.appendSamples("dev1", Arrays.asList(heart(5, null), heart(5, null), heart(7, null), heart(6, null)), 1);
+            stream.flush();
+            assertEquals(Arrays.asList("5000-0", "5000-1", "7000-0", "7000-1"), ids);
+        } finally {
+            stream.destroy();
+        }
+    }
+}
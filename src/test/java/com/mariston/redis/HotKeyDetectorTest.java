@@ -0,0 +1,123 @@
+package com.mariston.redis;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * sketches of {@link HotKeyDetector}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class HotKeyDetectorTest {
+
+    @Test
+    public void topHotKeys() throws Exception {
+        HotKeyDetector detector = new HotKeyDetector();
+        detector.setTopK(5);
+        for (int i = 0; i < 20000; i++) {
+            detector.record(1, "cold" + i, 0, false);
+            if (i % 2 == 0) {
+                detector.record(1, "hot", 0, false);
+            }
+            if (i % 10 == 0) {
+                detector.record(2, "warm", 0, true);
+            }
+        }
+        List<HotKeyDetector.KeyStat> top = detector.getTopHotKeys();
+        assertEquals("hot", top.get(0).getKey());
+        assertEquals(1, top.get(0).getIndex());
+        assertTrue(top.get(0).getValue() >= 10000);
+        assertEquals("warm", top.get(1).getKey());
+        assertTrue(detector.estimate(1, "hot") >= 10000);
+        assertTrue(detector.estimate(2, "warm") >= 2000);
+
+        detector.decay();
+        assertTrue(detector.estimate(1, "hot") < 10000);
+    }
+
+    @Test
+    public void topBigKeys() throws Exception {
+        HotKeyDetector detector = new HotKeyDetector();
+        detector.setTopK(3);
+        for (int i = 0; i < 1000; i++) {
+            detector.record(0, "k" + i, i, i % 2 == 0);
+        }
+        detector.record(0, "k10", 5000, true);
+        List<HotKeyDetector.KeyStat> top = detector.getTopBigKeys();
+        assertEquals(3, top.size());
+        assertEquals("k10", top.get(0).getKey());
+        assertEquals(5000, top.get(0).getValue());
+        assertEquals(999, top.get(1).getValue());
+        assertEquals(998, top.get(2).getValue());
+    }
+
+    @Test
+    public void alerts() throws Exception {
+        HotKeyDetector detector = new HotKeyDetector();
+        detector.setHotThreshold(100);
+        detector.setBigValueThreshold(1024);
+        final List<String> alerts = new ArrayList<>();
+        detector.addListener(new HotKeyListener() {
+            @Override
+            public void onHotKey(int index, String key, long estimate) {
+                alerts.add("hot " + key);
+            }
+
+            @Override
+            public void onBigKey(int index, String key, long bytes, boolean write) {
+                alerts.add("big " + key);
+            }
+        });
+        for (int i = 0; i < 500; i++) {
+            detector.record(3, "hot", 10, false);
+        }
+        detector.record(3, "file", 2048, true);
+        detector.record(3, "file", 4096, false);
+        assertEquals(2, alerts.size());
+        assertEquals("hot hot", alerts.get(0));
+        assertEquals("big file", alerts.get(1));
+
+        detector.decay();
+        for (int i = 0; i < 100; i++) {
+            detector.record(3, "hot", 10, false);
+        }
+        detector.record(3, "file", 2048, true);
+        assertEquals(4, alerts.size());
+        assertEquals("big file", alerts.get(3));
+    }
+
+    @Test
+    public void listenersChangedWhileRecording() throws Exception {
+        final HotKeyDetector detector = new HotKeyDetector();
+        detector.setBigValueThreshold(1);
+        final List<String> called = new ArrayList<>();
+        HotKeyListener listener = new HotKeyListener() {
+            @Override
+            public void onHotKey(int index, String key, long estimate) {
+            }
+
+            @Override
+            public void onBigKey(int index, String key, long bytes, boolean write) {
+                called.add(key);
+                // changing the listeners from a callback must not break the iteration
+                detector.addListener(this);
+            }
+        };
+        detector.addListener(listener);
+        detector.record(0, "a", 10, false);
+        assertEquals(2, detector.getListeners().size());
+        detector.setListeners(Collections.singletonList(listener));
+        detector.record(0, "b", 10, false);
+        // each record notifies the listeners registered when it started, once
+        assertEquals(Arrays.asList("a", "b"), called);
+        assertEquals(2, detector.getListeners().size());
+    }
+}
@@ -0,0 +1,83 @@
+package com.mariston.redis;
+
+import com.alibaba.fastjson.JSON;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the json paths of {@link RedisClient}: the String round trip of {@code put}/{@code get(key,
+ * index, clazz)} against the byte round trip of {@code putJson}/{@code getJson}. Only the client side codec is
+ * measured, redis is not involved.
+ * <p>
+ * run with {@code mvn test-compile} and
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.mariston.redis.JsonCodecBenchmark}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * size of the waveform of the sample
+     */
+    @Param({"64", "4096"})
+    public int dataSize;
+
+    private Heart heart;
+
+    private byte[] stored;
+
+    @Setup
+    public void setUp() {
+        heart = new Heart();
+        heart.setMonitoredTime(1508650000);
+        heart.setChannel(2);
+        heart.setSampleRate(250);
+        heart.setLeadEvent((short) 12);
+        byte[] data = new byte[dataSize];
+        ThreadLocalRandom.current().nextBytes(data);
+        heart.setData(data);
+        heart.setRemark("心率正常");
+        stored = JSON.toJSONBytes(heart);
+    }
+
+    @Benchmark
+    public byte[] writeString() {
+        return JSON.toJSONString(heart).getBytes(UTF8);
+    }
+
+    @Benchmark
+    public byte[] writeBytes() {
+        return JSON.toJSONBytes(heart);
+    }
+
+    @Benchmark
+    public Heart readString() {
+        return JSON.parseObject(new String(stored, UTF8), Heart.class);
+    }
+
+    @Benchmark
+    public Heart readBytes() {
+        return JSON.parseObject(stored, Heart.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder().include(JsonCodecBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
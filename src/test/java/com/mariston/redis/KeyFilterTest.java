@@ -0,0 +1,160 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.KeyScanCursor;
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.codec.ByteArrayCodec;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandOutput;
+import com.lambdaworks.redis.protocol.CommandType;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bloom filter of {@link KeyFilter}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class KeyFilterTest {
+
+    @Test
+    public void bits() throws Exception {
+        KeyFilter.Bits bits = new KeyFilter.Bits(10000, 0.01);
+        assertEquals(7, bits.getHashes());
+        for (int i = 0; i < 10000; i++) {
+            bits.add(("key:" + i).getBytes("UTF-8"));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(bits.mightContain(("key:" + i).getBytes("UTF-8")));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (bits.mightContain(("other:" + i).getBytes("UTF-8"))) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives " + falsePositives, falsePositives < 1500);
+        assertEquals(0.01, bits.expectedFalsePositiveRate(), 0.005);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void lookups() throws Exception {
+        KeyFilter filter = new KeyFilter();
+        filter.setDatabases(Collections.singleton(2));
+        // not rebuilt yet, every key may exist
+        assertTrue(filter.mightContain(2, "a"));
+        assertEquals(0, filter.getChecks());
+
+        Field field = KeyFilter.class.getDeclaredField("filters");
+        field.setAccessible(true);
+        ((Map<Integer, KeyFilter.Bits>) field.get(filter)).put(2, new KeyFilter.Bits(1000, 0.01));
+        filter.add(2, "a".getBytes("UTF-8"));
+        assertTrue(filter.mightContain(2, "a"));
+        assertFalse(filter.mightContain(2, "b"));
+        assertTrue(filter.mightContain(3, "b"));
+        filter.onMiss(2);
+        assertEquals(2, filter.getChecks());
+        assertEquals(1, filter.getAvoided());
+        assertEquals(0.5, filter.getFalsePositiveRate(), 0.0001);
+
+        filter.invalidate(2);
+        assertTrue(filter.mightContain(2, "b"));
+        assertEquals(-1, filter.getExpectedFalsePositiveRate(2), 0.0001);
+    }
+
+    private static Command<byte[], byte[], Object> command(Object reply) {
+        return new Command<>(CommandType.GET, new CommandOutput<byte[], byte[], Object>(ByteArrayCodec.INSTANCE, reply) {
+        }, null);
+    }
+
+    @Test
+    public void rebuildWhileWritePending() throws Exception {
+        // SET replies are held back while hold is set, SCAN finds an empty database
+        final boolean[] hold = {true};
+        final List<Command<byte[], byte[], Object>> pending = new ArrayList<>();
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if (!RedisFuture.class.isAssignableFrom(method.getReturnType())) {
+                        return "OK";
+                    }
+                    Object reply = "OK";
+                    if ("dbsize".equals(method.getName())) {
+                        reply = 0L;
+                    } else if ("scan".equals(method.getName())) {
+                        KeyScanCursor<byte[]> cursor = new KeyScanCursor<>();
+                        cursor.setFinished(true);
+                        reply = cursor;
+                    }
+                    Command<byte[], byte[], Object> command = command(reply);
+                    if ("set".equals(method.getName()) && hold[0]) {
+                        pending.add(command);
+                    } else {
+                        command.complete();
+                    }
+                    return command;
+                });
+        RedisClient client = new RedisClient();
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        // no databases configured, so nothing is rebuilt in the background
+        KeyFilter filter = new KeyFilter();
+        filter.setExpectedInsertions(1000);
+        client.setKeyFilter(filter);
+
+        client.put("sent", "v", 2);
+        assertEquals(0, filter.rebuild(2));
+        // the SCAN ran before the write landed
+        assertFalse(filter.mightContain(2, "sent"));
+        assertEquals(1, pending.size());
+        pending.get(0).complete();
+        assertTrue(filter.mightContain(2, "sent"));
+
+        // a spooled write replayed after the rebuild
+        File directory = Files.createTempDirectory("spool").toFile();
+        WriteSpool spool = new WriteSpool();
+        spool.setDirectory(directory);
+        spool.setDrainIntervalMillis(3600000);
+        spool.afterPropertiesSet();
+        try {
+            assertTrue(spool.append(WriteSpool.Op.SET, 2, "spooled".getBytes("UTF-8"), 0, "v".getBytes("UTF-8")));
+            client.setWriteSpool(spool);
+            hold[0] = false;
+            assertEquals(0, filter.rebuild(2));
+            assertFalse(filter.mightContain(2, "spooled"));
+            assertEquals(1, spool.drain());
+            assertTrue(filter.mightContain(2, "spooled"));
+        } finally {
+            spool.destroy();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+}
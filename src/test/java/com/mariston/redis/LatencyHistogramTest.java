@@ -0,0 +1,41 @@
+package com.mariston.redis;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * percentiles of {@link LatencyHistogram}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContinuous() throws Exception {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.upperBound(index) >= value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBound(index - 1) < value);
+            }
+        }
+        assertTrue(LatencyHistogram.index(Long.MAX_VALUE) > 0);
+    }
+
+    @Test
+    public void percentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertEquals(5000, histogram.getPercentile(50), 50);
+        assertEquals(9900, histogram.getPercentile(99), 99);
+        assertEquals(10000, histogram.getPercentile(100));
+    }
+}
@@ -0,0 +1,159 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisCommandExecutionException;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.codec.ByteArrayCodec;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandOutput;
+import com.lambdaworks.redis.protocol.CommandType;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * builder and results of {@link RedisBatch}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class RedisBatchTest {
+
+    @Test
+    public void queue() throws Exception {
+        RedisBatch batch = new RedisClient().batch(3)
+                .put("a", "1")
+                .put("b", 60, "2")
+                .putMap("c", Collections.singletonMap("f", "v"))
+                .delField("c", "g", "h")
+                .expire("a", 60);
+        assertEquals(5, batch.size());
+    }
+
+    @Test
+    public void unreachable() throws Exception {
+        // no pool configured, the connection can not be borrowed
+        RedisBatch.Result result = new RedisClient().batch(3).put("a", "1").execute();
+        assertFalse(result.isSuccess());
+        assertFalse(result.isAborted());
+        assertEquals(0, result.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readOutsideExecute() throws Exception {
+        new RedisClient().batch(0).read("a");
+    }
+
+    @Test
+    public void typedReplies() throws Exception {
+        RedisBatch.Result result = new RedisBatch.Result();
+        Field replies = RedisBatch.Result.class.getDeclaredField("replies");
+        replies.setAccessible(true);
+        replies.set(result, Arrays.<Object>asList("OK", 2L, true, "v".getBytes("UTF-8"), new RedisCommandExecutionException("WRONGTYPE")));
+        assertTrue(result.isSuccess());
+        assertEquals("OK", result.getString(0));
+        assertEquals(Long.valueOf(2), result.getLong(1));
+        assertTrue(result.getBoolean(2));
+        assertEquals("v", result.getString(3));
+        assertEquals("WRONGTYPE", result.getError(4));
+        assertNull(result.getString(4));
+        assertNull(result.getError(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void watchNeedsAtomic() throws Exception {
+        new RedisClient().batch(0).watch("a").atomic(false);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void pipelineCanNotWatch() throws Exception {
+        new RedisClient().batch(0).atomic(false).watch("a");
+    }
+
+    /**
+     * a client whose connection records the commands and answers EXEC with the next of {@code execReplies}
+     */
+    private RedisClient stub(final List<String> calls, final Deque<List<Object>> execReplies) {
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    if (!RedisFuture.class.isAssignableFrom(method.getReturnType())) {
+                        return "OK";
+                    }
+                    Object reply = "OK";
+                    if ("exec".equals(method.getName())) {
+                        reply = execReplies.poll();
+                    } else if ("get".equals(method.getName())) {
+                        reply = "v".getBytes("UTF-8");
+                    }
+                    Command<byte[], byte[], Object> command = new Command<>(CommandType.EXEC,
+                            new CommandOutput<byte[], byte[], Object>(ByteArrayCodec.INSTANCE, reply) {
+                            }, null);
+                    command.complete();
+                    return command;
+                });
+        RedisClient client = new RedisClient();
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        return client;
+    }
+
+    @Test
+    public void transaction() throws Exception {
+        List<String> calls = new ArrayList<>();
+        Deque<List<Object>> execReplies = new ArrayDeque<>();
+        execReplies.add(Arrays.<Object>asList("OK", true));
+        RedisBatch.Result result = stub(calls, execReplies).batch(0).watch("a").put("a", "1").expire("a", 60).execute();
+        assertTrue(result.isSuccess());
+        assertEquals("OK", result.getString(0));
+        assertTrue(result.getBoolean(1));
+        assertEquals(Arrays.asList("select", "watch", "multi", "set", "expire", "exec"), calls);
+    }
+
+    @Test
+    public void aborted() throws Exception {
+        List<String> calls = new ArrayList<>();
+        Deque<List<Object>> execReplies = new ArrayDeque<>();
+        // EXEC of a transaction aborted by a changed watched key
+        execReplies.add(Collections.emptyList());
+        RedisBatch.Result result = stub(calls, execReplies).batch(0).watch("a").put("a", "1").execute();
+        assertFalse(result.isSuccess());
+        assertTrue(result.isAborted());
+        assertEquals(1, result.getAttempts());
+        assertFalse(calls.contains("unwatch"));
+
+        // a body is rebuilt and retried
+        calls.clear();
+        execReplies.add(Collections.emptyList());
+        execReplies.add(Collections.<Object>singletonList("OK"));
+        result = stub(calls, execReplies).batch(0).watch("a").execute(batch -> batch.put("a", batch.read("a") + "1"));
+        assertTrue(result.isSuccess());
+        assertEquals(2, result.getAttempts());
+        assertEquals(2, Collections.frequency(calls, "watch"));
+    }
+
+    @Test
+    public void unwatchWhenBodyFails() throws Exception {
+        List<String> calls = new ArrayList<>();
+        RedisBatch.Result result = stub(calls, new ArrayDeque<>()).batch(0).watch("a").execute(batch -> {
+            throw new IllegalStateException("give up");
+        });
+        assertEquals("give up", result.getError());
+        assertEquals(Arrays.asList("select", "watch", "unwatch"), calls);
+    }
+}
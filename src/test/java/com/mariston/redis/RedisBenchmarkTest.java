@@ -0,0 +1,53 @@
+package com.mariston.redis;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * options of {@link RedisBenchmark}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class RedisBenchmarkTest {
+
+    @Test
+    public void sizes() throws Exception {
+        Random random = new Random(7);
+        assertEquals(100, RedisBenchmark.Sizes.parse("fixed:100").next(random));
+        for (int i = 0; i < 1000; i++) {
+            int size = RedisBenchmark.Sizes.parse("uniform:10-20").next(random);
+            assertTrue(size >= 10 && size <= 20);
+        }
+        RedisBenchmark.Sizes exp = RedisBenchmark.Sizes.parse("exp:100");
+        long sum = 0;
+        for (int i = 0; i < 10000; i++) {
+            sum += exp.next(random);
+        }
+        assertEquals(100, sum / 10000.0, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownSize() throws Exception {
+        RedisBenchmark.Sizes.parse("normal:100");
+    }
+
+    @Test
+    public void schedule() throws Exception {
+        RedisBenchmark.Operation[] schedule = RedisBenchmark.schedule("get:3, putMap:1");
+        assertEquals(4, schedule.length);
+        assertEquals(RedisBenchmark.Operation.PUTMAP, schedule[3]);
+    }
+
+    @Test
+    public void submitTimeLabel() throws Exception {
+        assertEquals("get", RedisBenchmark.label(RedisBenchmark.Operation.GET));
+        assertEquals("getmap", RedisBenchmark.label(RedisBenchmark.Operation.GETMAP));
+        assertEquals("put*", RedisBenchmark.label(RedisBenchmark.Operation.PUT));
+        assertEquals("putfile*", RedisBenchmark.label(RedisBenchmark.Operation.PUTFILE));
+    }
+}
@@ -141,4 +141,35 @@ public class RedisClientTest {
 
     }
 
+    @Test
+    public void expireAll() throws Exception {
+        redisClient.put("expire3", "expire3");
+        redisClient.put("expire4", "expire4");
+        long count = redisClient.expireAll(Arrays.asList("expire3", "expire4"), 1000, 15);
+        logger.info("the count is {}", count);
+    }
+
+    @Test
+    public void putJson() throws Exception {
+        Heart heart = new Heart();
+        heart.setChannel(2);
+        heart.setData(new byte[]{1, 2, 3});
+        heart.setRemark("json");
+        redisClient.putJson("json", heart, 1200, 5);
+        Heart value = redisClient.getJson("json", 5, Heart.class);
+        logger.info("the value is {}", value);
+        assertHeart(heart, value);
+        List<Heart> values = redisClient.getJsonAll(Arrays.asList("json", "json-none"), 5, Heart.class);
+        assertEquals(2, values.size());
+        assertHeart(heart, values.get(0));
+        assertNull(values.get(1));
+    }
+
+    private void assertHeart(Heart expected, Heart actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getChannel(), actual.getChannel());
+        assertArrayEquals(expected.getData(), actual.getData());
+        assertEquals(expected.getRemark(), actual.getRemark());
+    }
+
 }
\ No newline at end of file
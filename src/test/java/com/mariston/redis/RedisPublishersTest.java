@@ -0,0 +1,183 @@
+package com.mariston.redis;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * demand handling of {@link RedisPublishers}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class RedisPublishersTest {
+
+    /**
+     * records signals, requests nothing by itself
+     */
+    private static final class Recorder<T> implements Subscriber<T> {
+
+        final List<T> elements = new ArrayList<>();
+
+        Subscription subscription;
+
+        boolean completed;
+
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T element) {
+            elements.add(element);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Test
+    public void pagedOnDemand() throws Exception {
+        final AtomicInteger fetched = new AtomicInteger();
+        Publisher<Integer> publisher = RedisPublishers.paged(() -> () -> {
+            int page = fetched.getAndIncrement();
+            if (page == 0) {
+                return Arrays.asList(1, 2, 3);
+            }
+            if (page == 1) {
+                // SCAN may return empty pages
+                return new ArrayList<>();
+            }
+            return page == 2 ? Arrays.asList(4, 5) : null;
+        });
+        Recorder<Integer> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+        assertEquals(0, fetched.get());
+
+        recorder.subscription.request(2);
+        assertEquals(Arrays.asList(1, 2), recorder.elements);
+        assertEquals(1, fetched.get());
+
+        recorder.subscription.request(2);
+        assertEquals(Arrays.asList(1, 2, 3, 4), recorder.elements);
+        assertEquals(3, fetched.get());
+        assertFalse(recorder.completed);
+
+        recorder.subscription.request(Long.MAX_VALUE);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), recorder.elements);
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void pagedError() throws Exception {
+        Publisher<Integer> publisher = RedisPublishers.paged(() -> () -> {
+            throw new IllegalStateException("down");
+        });
+        Recorder<Integer> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(1);
+        assertEquals("down", recorder.error.getMessage());
+
+        recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(0);
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void batched() throws Exception {
+        final List<String> keys = Arrays.asList("a", "b", "c", "d", "e");
+        final List<List<String>> batches = new ArrayList<>();
+        Publisher<String> upstream = RedisPublishers.paged(() -> new RedisPublishers.Pager<String>() {
+            private boolean sent;
+
+            @Override
+            public List<String> next() {
+                if (sent) {
+                    return null;
+                }
+                sent = true;
+                return keys;
+            }
+        });
+        Publisher<String> publisher = RedisPublishers.batched(upstream, 2, batch -> {
+            batches.add(batch);
+            List<String> values = new ArrayList<>();
+            for (String key : batch) {
+                values.add(key.toUpperCase());
+            }
+            return values;
+        });
+        Recorder<String> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+        assertTrue(batches.isEmpty());
+
+        recorder.subscription.request(1);
+        assertEquals(Arrays.asList("A"), recorder.elements);
+        assertEquals(1, batches.size());
+
+        recorder.subscription.request(10);
+        assertEquals(Arrays.asList("A", "B", "C", "D", "E"), recorder.elements);
+        assertEquals(Arrays.asList("e"), batches.get(2));
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void batchedInvalidRequestCancelsUpstream() throws Exception {
+        final List<Subscriber<? super String>> keys = new ArrayList<>();
+        final AtomicInteger cancels = new AtomicInteger();
+        Publisher<String> upstream = subscriber -> {
+            keys.add(subscriber);
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                    cancels.incrementAndGet();
+                }
+            });
+        };
+        final List<List<String>> batches = new ArrayList<>();
+        Publisher<String> publisher = RedisPublishers.batched(upstream, 2, batch -> {
+            batches.add(batch);
+            return batch;
+        });
+        Recorder<String> recorder = new Recorder<>();
+        publisher.subscribe(recorder);
+        recorder.subscription.request(1);
+        keys.get(0).onNext("a");
+        keys.get(0).onNext("b");
+        assertEquals(Arrays.asList("a"), recorder.elements);
+
+        recorder.subscription.request(-1);
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+        assertEquals(1, cancels.get());
+        // keys already in flight are not loaded any more
+        keys.get(0).onNext("c");
+        keys.get(0).onNext("d");
+        keys.get(0).onComplete();
+        assertEquals(1, batches.size());
+        assertFalse(recorder.completed);
+    }
+}
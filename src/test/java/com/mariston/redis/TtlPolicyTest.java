@@ -0,0 +1,181 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.codec.ByteArrayCodec;
+import com.lambdaworks.redis.output.BooleanOutput;
+import com.lambdaworks.redis.output.StatusOutput;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandType;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * jitter and sliding expiry of {@link TtlPolicy}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class TtlPolicyTest {
+
+    @Test
+    public void jitter() throws Exception {
+        TtlPolicy policy = new TtlPolicy();
+        policy.setJitterPercent(10);
+        policy.setJitterSeconds(5);
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 10000; i++) {
+            long ttl = policy.apply(1000);
+            min = Math.min(min, ttl);
+            max = Math.max(max, ttl);
+        }
+        assertTrue(min >= 1000);
+        assertTrue(max <= 1105);
+        assertTrue(max - min > 50);
+        assertEquals(-1, policy.apply(-1));
+
+        SortedMap<Long, Long> distribution = policy.getExpiryDistribution();
+        long total = 0;
+        for (Long count : distribution.values()) {
+            total += count;
+        }
+        assertEquals(10000, total);
+        assertTrue(distribution.size() >= 2);
+    }
+
+    @Test
+    public void noJitterByDefault() throws Exception {
+        assertEquals(300, new TtlPolicy().apply(300));
+    }
+
+    @Test
+    public void slidingExpiry() throws Exception {
+        TtlPolicy policy = new TtlPolicy();
+        Map<String, Long> sliding = new HashMap<>();
+        sliding.put("session:", 1800L);
+        sliding.put("session:admin:", 600L);
+        policy.setSlidingExpiry(sliding);
+        assertEquals(Long.valueOf(1800), policy.sliding("session:42"));
+        assertEquals(Long.valueOf(600), policy.sliding("session:admin:1"));
+        assertNull(policy.sliding("user:1"));
+
+        policy.onRead(1, "session:42");
+        policy.onRead(1, "session:42");
+        policy.onRead(2, "session:42");
+        policy.onRead(1, "user:1");
+        assertEquals(3, policy.getRefreshRequests());
+        assertEquals(2, policy.getRefreshPending());
+    }
+
+    @Test
+    public void noSlidingByDefault() throws Exception {
+        TtlPolicy policy = new TtlPolicy();
+        policy.setSlidingExpiry(Collections.<String, Long>emptyMap());
+        policy.onRead(1, "session:42");
+        assertEquals(0, policy.getRefreshRequests());
+    }
+
+    @Test
+    public void refreshKeepsConfiguredTtl() throws Exception {
+        final List<Long> sent = new ArrayList<>();
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if ("expire".equals(method.getName())) {
+                        sent.add((Long) args[1]);
+                        Command<byte[], byte[], Boolean> command = new Command<>(CommandType.EXPIRE, new BooleanOutput<>(ByteArrayCodec.INSTANCE), null);
+                        command.getOutput().set(1L);
+                        command.complete();
+                        return command;
+                    }
+                    return "OK";
+                });
+        RedisClient client = new RedisClient();
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        TtlPolicy policy = new TtlPolicy();
+        policy.setJitterPercent(50);
+        policy.setSlidingExpiry(Collections.singletonMap("session:", 1800L));
+        client.setTtlPolicy(policy);
+        try {
+            for (int i = 0; i < 3; i++) {
+                policy.onRead(1, "session:42");
+                policy.flush();
+                Thread.sleep(5);
+                policy.setMinRefreshIntervalMillis(0);
+            }
+            assertEquals(Arrays.asList(1800L, 1800L, 1800L), sent);
+            assertTrue(policy.getExpiryDistribution().isEmpty());
+
+            // explicit expireAll is jittered and counted once per key that exists
+            client.expireAll(Arrays.asList("a", "b"), 1000, 1);
+            assertTrue(sent.get(3) >= 1000 && sent.get(3) <= 1500);
+            long total = 0;
+            for (Long count : policy.getExpiryDistribution().values()) {
+                total += count;
+            }
+            assertEquals(2, total);
+        } finally {
+            policy.destroy();
+        }
+    }
+
+    @Test
+    public void countedOnAcknowledgement() throws Exception {
+        final List<Command<byte[], byte[], String>> pending = new ArrayList<>();
+        RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if ("setex".equals(method.getName())) {
+                        Command<byte[], byte[], String> command = new Command<>(CommandType.SETEX, new StatusOutput<>(ByteArrayCodec.INSTANCE), null);
+                        pending.add(command);
+                        return command;
+                    }
+                    return "OK";
+                });
+        RedisClient client = new RedisClient();
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        TtlPolicy policy = new TtlPolicy();
+        client.setTtlPolicy(policy);
+        try {
+            client.put("a", 600, "1", 1);
+            client.putObject("b", "2", 600, 1);
+            assertEquals(2, pending.size());
+            // not counted before redis has replied
+            assertTrue(policy.getExpiryDistribution().isEmpty());
+
+            pending.get(0).getOutput().set(ByteBuffer.wrap("OK".getBytes("UTF-8")));
+            pending.get(0).complete();
+            pending.get(1).setException(new RedisException("connection lost"));
+            pending.get(1).complete();
+            assertEquals(Collections.singletonList(1L), new ArrayList<>(policy.getExpiryDistribution().values()));
+        } finally {
+            policy.destroy();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.mariston.redis;
+
+import com.lambdaworks.redis.RedisAsyncConnection;
+import com.lambdaworks.redis.RedisException;
+import com.lambdaworks.redis.RedisFuture;
+import com.lambdaworks.redis.codec.ByteArrayCodec;
+import com.lambdaworks.redis.protocol.Command;
+import com.lambdaworks.redis.protocol.CommandOutput;
+import com.lambdaworks.redis.protocol.CommandType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.lettuce.DefaultLettucePool;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+/**
+ * segments and replay of {@link WriteSpool}
+ *
+ * @author mariston
+ * @version V1.0
+ * @since 2026/10/19
+ */
+public class WriteSpoolTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("spool").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private WriteSpool spool(int segmentSize, int maxSegments) throws Exception {
+        WriteSpool spool = new WriteSpool();
+        spool.setDirectory(directory);
+        spool.setSegmentSize(segmentSize);
+        spool.setMaxSegments(maxSegments);
+        spool.afterPropertiesSet();
+        return spool;
+    }
+
+    @Test
+    public void appendAndRecover() throws Exception {
+        WriteSpool spool = spool(4096, 4);
+        assertFalse(spool.hasBacklog());
+        assertTrue(spool.append(WriteSpool.Op.SET, 3, "k1".getBytes("UTF-8"), 60, "v1".getBytes("UTF-8")));
+        assertTrue(spool.append(WriteSpool.Op.HDEL, 5, "k2".getBytes("UTF-8"), 0, "f1".getBytes("UTF-8"), "f2".getBytes("UTF-8")));
+        assertTrue(spool.append(WriteSpool.Op.DEL, 3, "k1".getBytes("UTF-8"), 0));
+        assertEquals(3, spool.getBacklog());
+        spool.destroy();
+
+        WriteSpool recovered = spool(4096, 4);
+        assertEquals(3, recovered.getBacklog());
+        assertEquals(1, recovered.getSegments());
+        assertTrue(recovered.hasBacklog());
+
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        WriteSpool.Segment segment = WriteSpool.Segment.open(files[0]);
+        List<WriteSpool.Entry> entries = new ArrayList<>();
+        int end = segment.read(entries, 2);
+        assertEquals(2, entries.size());
+        assertEquals(WriteSpool.Op.SET, entries.get(0).op);
+        assertEquals(3, entries.get(0).index);
+        assertEquals(60, entries.get(0).seconds);
+        assertEquals("k1", new String(entries.get(0).key, "UTF-8"));
+        assertEquals("v1", new String(entries.get(0).args[0], "UTF-8"));
+        assertEquals(WriteSpool.Op.HDEL, entries.get(1).op);
+        assertEquals("f2", new String(entries.get(1).args[1], "UTF-8"));
+
+        // a committed read position survives a restart
+        segment.commit(end);
+        segment.channel.close();
+        recovered.destroy();
+        assertEquals(1, spool(4096, 4).getBacklog());
+    }
+
+    @Test
+    public void dropWhenFull() throws Exception {
+        WriteSpool spool = spool(256, 2);
+        byte[] value = new byte[100];
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (spool.append(WriteSpool.Op.SET, 0, ("k" + i).getBytes("UTF-8"), 0, value)) {
+                accepted++;
+            }
+        }
+        assertEquals(2, spool.getSegments());
+        assertEquals(accepted, spool.getBacklog());
+        assertEquals(10 - accepted, spool.getDropped());
+        assertTrue(spool.getBacklogBytes() > 0);
+        spool.destroy();
+    }
+
+    @Test
+    public void rejectWhenFull() throws Exception {
+        // redis is down: every borrow fails
+        final AtomicInteger borrows = new AtomicInteger();
+        RedisClient client = new RedisClient();
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                borrows.incrementAndGet();
+                throw new IllegalStateException("connection refused");
+            }
+        });
+        WriteSpool spool = spool(256, 1);
+        spool.setDrainIntervalMillis(3600000);
+        client.setWriteSpool(spool);
+        try {
+            client.put("k", "v1", 0);
+            assertEquals(1, borrows.get());
+            assertEquals(1, spool.getBacklog());
+            for (int i = 0; i < 10; i++) {
+                client.put("k", "v" + (i + 2), 0);
+            }
+            // queued behind the backlog or rejected, never sent ahead of it, each drop counted once
+            assertEquals(1, borrows.get());
+            assertEquals(11, spool.getBacklog() + spool.getDropped());
+            assertTrue(spool.getDropped() > 0);
+            assertFalse(client.expire("k", 60, 0));
+            assertEquals(12, spool.getBacklog() + spool.getDropped());
+        } finally {
+            spool.destroy();
+        }
+    }
+
+    /**
+     * a client whose connection records every write as {@code "op db key [ttl]"}, or fails them while {@code down}
+     */
+    private RedisClient client(final List<String> calls, final AtomicBoolean down) {
+        final int[] db = {0};
+        final RedisAsyncConnection<?, ?> connection = (RedisAsyncConnection<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RedisAsyncConnection.class}, (proxy, method, args) -> {
+                    if ("select".equals(method.getName())) {
+                        db[0] = (Integer) args[0];
+                    } else if (down.get()) {
+                        throw new RedisException("connection lost");
+                    } else {
+                        StringBuilder call = new StringBuilder(method.getName()).append(' ').append(db[0]);
+                        if (args != null && args.length > 0) {
+                            byte[] key = args[0] instanceof byte[][] ? ((byte[][]) args[0])[0] : (byte[]) args[0];
+                            call.append(' ').append(new String(key, "UTF-8"));
+                        }
+                        if (args != null && args.length > 1 && args[1] instanceof Long) {
+                            call.append(' ').append(args[1]);
+                        }
+                        calls.add(call.toString());
+                    }
+                    if (RedisFuture.class.isAssignableFrom(method.getReturnType())) {
+                        Command<byte[], byte[], Object> command = new Command<>(CommandType.GET,
+                                new CommandOutput<byte[], byte[], Object>(ByteArrayCodec.INSTANCE, 1L) {
+                                }, null);
+                        command.complete();
+                        return command;
+                    }
+                    return "OK";
+                });
+        RedisClient client = new RedisClient();
+        client.setDefaultLettucePool(new DefaultLettucePool() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public RedisAsyncConnection<byte[], byte[]> getResource() {
+                return (RedisAsyncConnection<byte[], byte[]>) connection;
+            }
+
+            @Override
+            public void returnResource(RedisAsyncConnection<byte[], byte[]> resource) {
+            }
+        });
+        return client;
+    }
+
+    /**
+     * move the write time of every spooled record back, as if redis had been down for {@code millis}
+     */
+    private void age(long millis) throws Exception {
+        for (File file : directory.listFiles()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                int position = 16;
+                while (position + 8 <= raf.length()) {
+                    raf.seek(position);
+                    int length = raf.readInt();
+                    if (length <= 0) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    raf.seek(position + 8);
+                    raf.readFully(payload);
+                    ByteBuffer buffer = ByteBuffer.wrap(payload);
+                    // op, index, seconds, written at
+                    buffer.putLong(13, buffer.getLong(13) - millis);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    raf.seek(position + 4);
+                    raf.writeInt((int) crc.getValue());
+                    raf.write(payload);
+                    position += 8 + length;
+                }
+            }
+        }
+    }
+
+    private WriteSpool attach(WriteSpool spool, RedisClient client) {
+        spool.setDrainIntervalMillis(3600000);
+        client.setWriteSpool(spool);
+        return spool;
+    }
+
+    @Test
+    public void drainShortensTtl() throws Exception {
+        WriteSpool spool = spool(4096, 4);
+        spool.append(WriteSpool.Op.SET, 0, "a".getBytes("UTF-8"), 60, "1".getBytes("UTF-8"));
+        spool.append(WriteSpool.Op.EXPIRE, 0, "b".getBytes("UTF-8"), 60);
+        spool.destroy();
+        // spooled 30s ago, replayed after a restart
+        age(30000);
+        List<String> calls = new ArrayList<>();
+        spool = attach(spool(4096, 4), client(calls, new AtomicBoolean()));
+        try {
+            assertEquals(2, spool.drain());
+            assertEquals(2, calls.size());
+            String[] set = calls.get(0).split(" ");
+            String[] expire = calls.get(1).split(" ");
+            assertEquals("psetex", set[0]);
+            assertEquals("pexpire", expire[0]);
+            long ttl = Long.parseLong(set[3]);
+            assertTrue(ttl + "", ttl > 25000 && ttl <= 30000);
+            ttl = Long.parseLong(expire[3]);
+            assertTrue(ttl + "", ttl > 25000 && ttl <= 30000);
+            assertEquals(0, spool.getExpired());
+            assertFalse(spool.hasBacklog());
+        } finally {
+            spool.destroy();
+        }
+    }
+
+    @Test
+    public void drainDeletesExpired() throws Exception {
+        WriteSpool spool = spool(4096, 4);
+        spool.append(WriteSpool.Op.SET, 0, "a".getBytes("UTF-8"), 10, "1".getBytes("UTF-8"));
+        spool.append(WriteSpool.Op.EXPIRE, 0, "b".getBytes("UTF-8"), 10);
+        spool.append(WriteSpool.Op.SET, 0, "c".getBytes("UTF-8"), 0, "3".getBytes("UTF-8"));
+        spool.destroy();
+        age(30000);
+        List<String> calls = new ArrayList<>();
+        spool = attach(spool(4096, 4), client(calls, new AtomicBoolean()));
+        try {
+            assertEquals(3, spool.drain());
+            assertEquals(Arrays.asList("del 0 a", "del 0 b", "set 0 c"), calls);
+            assertEquals(2, spool.getExpired());
+            assertEquals(3, spool.getReplayed());
+        } finally {
+            spool.destroy();
+        }
+    }
+
+    @Test
+    public void drainKeepsOrderPerDatabase() throws Exception {
+        List<String> calls = new ArrayList<>();
+        WriteSpool spool = attach(spool(4096, 4), client(calls, new AtomicBoolean()));
+        try {
+            spool.append(WriteSpool.Op.SET, 1, "a".getBytes("UTF-8"), 0, "1".getBytes("UTF-8"));
+            spool.append(WriteSpool.Op.SET, 2, "b".getBytes("UTF-8"), 0, "2".getBytes("UTF-8"));
+            spool.append(WriteSpool.Op.DEL, 1, "a".getBytes("UTF-8"), 0);
+            spool.append(WriteSpool.Op.FLUSHDB, 2, new byte[0], 0);
+            spool.append(WriteSpool.Op.HDEL, 1, "c".getBytes("UTF-8"), 0, "f".getBytes("UTF-8"));
+            assertEquals(5, spool.drain());
+            // every write runs in its own database, in the order it was spooled there
+            assertEquals(Arrays.asList("set 1 a", "del 1 a", "hdel 1 c", "set 2 b", "flushdb 2"), calls);
+        } finally {
+            spool.destroy();
+        }
+    }
+
+    @Test
+    public void failedReplayIsNotCommitted() throws Exception {
+        List<String> calls = new ArrayList<>();
+        AtomicBoolean down = new AtomicBoolean(true);
+        WriteSpool spool = attach(spool(4096, 4), client(calls, down));
+        spool.append(WriteSpool.Op.SET, 0, "a".getBytes("UTF-8"), 0, "1".getBytes("UTF-8"));
+        spool.append(WriteSpool.Op.DEL, 0, "b".getBytes("UTF-8"), 0);
+        assertEquals(0, spool.drain());
+        assertEquals(2, spool.getBacklog());
+        assertNotNull(spool.getLastError());
+        spool.destroy();
+
+        // the read position was not moved, the whole batch is replayed after a restart
+        down.set(false);
+        spool = attach(spool(4096, 4), client(calls, down));
+        try {
+            assertEquals(2, spool.getBacklog());
+            assertEquals(2, spool.drain());
+            assertEquals(Arrays.asList("set 0 a", "del 0 b"), calls);
+            assertEquals(0, spool.getBacklog());
+        } finally {
+            spool.destroy();
+        }
+        assertEquals(0, spool(4096, 4).getBacklog());
+    }
+
+    @Test
+    public void drainMovesToNextSegment() throws Exception {
+        List<String> calls = new ArrayList<>();
+        WriteSpool spool = attach(spool(256, 4), client(calls, new AtomicBoolean()));
+        try {
+            // two records per segment
+            byte[] value = new byte[50];
+            for (int i = 0; i < 4; i++) {
+                assertTrue(spool.append(WriteSpool.Op.SET, 0, ("k" + i).getBytes("UTF-8"), 0, value));
+            }
+            assertEquals(2, spool.getSegments());
+            assertEquals(2, spool.drain());
+            // the finished segment is deleted and the same drain replays the next one
+            assertEquals(2, spool.drain());
+            assertEquals(1, spool.getSegments());
+            assertEquals(Arrays.asList("set 0 k0", "set 0 k1", "set 0 k2", "set 0 k3"), calls);
+            assertFalse(spool.hasBacklog());
+        } finally {
+            spool.destroy();
+        }
+    }
+
+    @Test
+    public void queueBehindBacklog() throws Exception {
+        List<String> calls = new ArrayList<>();
+        RedisClient client = client(calls, new AtomicBoolean());
+        client.setDatabases(16);
+        WriteSpool spool = attach(spool(4096, 4), client);
+        try {
+            spool.append(WriteSpool.Op.SET, 0, "a".getBytes("UTF-8"), 0, "1".getBytes("UTF-8"));
+            // spooled behind the older write instead of sent ahead of it
+            client.flushdb(0);
+            assertEquals(2, client.expireAll(Arrays.asList("a", "b"), 60, 0, false));
+            assertTrue(client.expire("a", 60, 0));
+            // can not be spooled, refused
+            assertFalse(client.batch(0).put("a", "2").execute().isSuccess());
+            assertTrue(calls.isEmpty());
+            assertEquals(5, spool.getBacklog());
+
+            assertEquals(5, spool.drain());
+            List<String> replayed = new ArrayList<>();
+            for (String call : calls) {
+                // without the remaining ttl
+                replayed.add(call.replaceAll("^(\\S+ \\d+ \\S+) \\d+$", "$1"));
+            }
+            assertEquals(Arrays.asList("set 0 a", "flushdb 0", "pexpire 0 a", "pexpire 0 b", "pexpire 0 a"), replayed);
+        } finally {
+            spool.destroy();
+        }
+    }
+}